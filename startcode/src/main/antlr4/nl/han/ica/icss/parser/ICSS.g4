@@ -58,9 +58,7 @@ stylesheetLines: variableDeclaration | stylerule;
 variableDeclaration: variableIdentifier ASSIGNMENT_OPERATOR variableValue SEMICOLON;
 variableReference: CAPITAL_IDENT;
 variableIdentifier: CAPITAL_IDENT;
-variableValue: variableHardcodedValue | variableReference | calculation | booleanExpressions;
-
-variableHardcodedValue: TRUE | FALSE | PIXELSIZE | PERCENTAGE | COLOR | SCALAR;
+variableValue: booleanExpressions;
 
 stylerule: selector OPEN_BRACE styleBody CLOSE_BRACE;
 selector: tagSelector | classSelector | idSelector;
@@ -74,33 +72,26 @@ propertyIdentifier: LOWER_IDENT;
 ifClause: IF BOX_BRACKET_OPEN condition BOX_BRACKET_CLOSE OPEN_BRACE conditionalBody CLOSE_BRACE elseClause?;
 elseClause: ELSE OPEN_BRACE conditionalBody CLOSE_BRACE;
 
-condition: variableReference | booleanExpressions;
+condition: booleanExpressions;
 conditionalBody: conditionalBodyLine+;
 conditionalBodyLine: variableDeclaration | styleDeclaration | ifClause;
 
-propertyValue: calculation | hardcodedPropertyValue | variableReference;
-
-calculation: subCalculation;
+propertyValue: calculation;
 
-subCalculation: subCalculation MUL subCalculation
-              | subCalculation (PLUS | MIN) subCalculation
-              | generalValue;
+//Every precedence level has its own rule, from the lowest to the highest precedence.
+//The levels do not overlap, so the parser can choose every alternative by looking at the next token.
+calculation: calculation (PLUS | MIN) product | product;
+product: product MUL generalValue | generalValue;
 
 generalValue: variableReference | hardcodedValue;
 
-hardcodedPropertyValue: hardcodedValue;
-
-hardcodedValue: dimensionSize | SCALAR | COLOR | TRUE | FALSE;
-
-dimensionSize: PIXELSIZE | PERCENTAGE;
-
-booleanExpressions: booleanExpressions AND booleanExpressions
-                    | booleanExpressions OR booleanExpressions
-                    | booleanExpressions (LT | LET | GET | GT | EQ | NQ ) booleanExpressions
-                    | booleanExpression;
+hardcodedValue: PIXELSIZE | PERCENTAGE | SCALAR | COLOR | TRUE | FALSE;
 
-booleanExpression: NEGATION_OPERATOR? (TRUE | FALSE | equality | variableReference | subCalculation );
-equality: NEGATION_OPERATOR? subCalculation (LT | LET | GET | GT | EQ | NQ) NEGATION_OPERATOR? subCalculation;
+//The operators of a boolean expression are not layered: whether a comparison compares the two operands next to it
+//depends on the operand before it, not on the next token. The AST is built from the list by precedence:
+//a comparison of two operands first, then AND, then OR, then a comparison of everything around it.
+booleanExpressions: booleanExpression ((AND | OR | LT | LET | GET | GT | EQ | NQ) booleanExpression)*;
+booleanExpression: NEGATION_OPERATOR* calculation;
 
 tagSelector: LOWER_IDENT;
 classSelector: CLASS_IDENT;
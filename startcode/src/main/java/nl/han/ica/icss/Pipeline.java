@@ -1,45 +1,131 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTSnapshot;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.SymbolTable;
 import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.ErrorCollector;
+import nl.han.ica.icss.checker.PropertySchema;
+import nl.han.ica.icss.checker.RuleCheckCache;
 import nl.han.ica.icss.checker.SemanticError;
 import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.ByteBufferCharStream;
+import nl.han.ica.icss.parser.IncrementalParser;
+import nl.han.ica.icss.parser.ReusableParser;
+import nl.han.ica.icss.parser.SyntaxError;
 import nl.han.ica.icss.transforms.EvalExpressions;
 import nl.han.ica.icss.transforms.RemoveIf;
+import nl.han.ica.icss.transforms.Transform;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 public class Pipeline implements ANTLRErrorListener {
 
     private AST ast;
+    //In compact mode a parse only keeps this form, the first stage that needs nodes expands it into ast and keeps the expansion.
+    //It is null again when a stage changed the expansion, and compacted again when it is asked for
+    private CompactAST compactAST;
+    private boolean useCompactAST = false;
+    private boolean keepsCompactAST = false;
+    //With persistent transforms the checked AST is kept unchanged next to the transformed one
+    private AST checkedAST;
+    private boolean persistentTransforms = false;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
     private List<String> errors;
+    private List<SyntaxError> syntaxErrors;
+    private List<SemanticError> semanticErrors;
+    private boolean reuseParser = false;
+    private boolean twoStagePrediction = false;
+    private boolean fullContextFallbackUsed = false;
+    private boolean buildASTWhileParsing = false;
+    private boolean useScanner = false;
+    private boolean errorRecovery = false;
+    private int maxSemanticErrors = ErrorCollector.UNLIMITED;
+    private PropertySchema propertySchema = PropertySchema.getDefault();
+    private boolean parallelCheck = false;
+    private boolean parallelTransform = false;
+    //The errors of the style rules of the last check, when checks only check the rules that changed
+    private RuleCheckCache ruleCheckCache;
+    private SymbolTable symbolTable = new SymbolTable();
+    private final IncrementalParser incrementalParser = new IncrementalParser();
+    //Checking with errors and (not persistent) transforming change the AST in place, after that an edit has to parse everything again
+    private boolean astChangedSinceParse = false;
+    //An incremental check with errors does not count as a change: an edit removes the errors from their nodes instead
+    private List<SemanticError> errorsOnNodes = Collections.emptyList();
+    //Whether the variable references of the AST still have the addresses the last check gave them
+    private boolean variablesBound = false;
 
     public Pipeline() {
         errors = new ArrayList<>();
+        syntaxErrors = new ArrayList<>();
+        semanticErrors = new ArrayList<>();
     }
 
+    /**
+     * The AST of the last stage. In compact mode the first call expands the compact form, later calls and stages
+     * return and change that expansion.
+     */
     public AST getAST() {
+        if (ast == null && compactAST != null) {
+            ast = compactAST.toAST();
+        }
         return ast;
     }
 
+    /**
+     * The compact form of the AST, only kept in compact mode. After a stage changed the AST it is compacted again.
+     */
+    public CompactAST getCompactAST() {
+        if (keepsCompactAST && compactAST == null && ast != null) {
+            compactAST = CompactAST.of(ast);
+        }
+        return compactAST;
+    }
+
+    /**
+     * The checked AST the last transform started from, only kept with persistent transforms.
+     */
+    public AST getCheckedAST() {
+        return checkedAST;
+    }
+
     public List<String> getErrors() {
         return errors;
     }
 
+    /**
+     * The syntax errors of the last parse with their position, they are also part of {@link #getErrors()}.
+     */
+    public List<SyntaxError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+    /**
+     * The semantic errors of the last check with the node they belong to, in the order they were found.
+     * They are also part of {@link #getErrors()}.
+     */
+    public List<SemanticError> getSemanticErrors() {
+        return semanticErrors;
+    }
+
     public boolean isParsed() {
         return parsed;
     }
@@ -52,78 +138,324 @@ public class Pipeline implements ANTLRErrorListener {
         return transformed;
     }
 
+    /**
+     * When enabled, parsing uses a lexer and parser per thread that are reset for every input
+     * instead of building new ANTLR components for each call.
+     */
+    public void setReuseParser(boolean reuseParser) {
+        this.reuseParser = reuseParser;
+    }
+
+    /**
+     * When enabled, parsing first tries ANTLR's SLL prediction and only falls back to full LL prediction
+     * when that fails. The resulting AST and the reported errors are the same in both modes.
+     */
+    public void setTwoStagePrediction(boolean twoStagePrediction) {
+        this.twoStagePrediction = twoStagePrediction;
+    }
+
+    /**
+     * When enabled, the parser builds the AST directly from the tokens it matches instead of building a parse tree
+     * that is walked afterwards. The resulting AST is the same.
+     */
+    public void setBuildASTWhileParsing(boolean buildASTWhileParsing) {
+        this.buildASTWhileParsing = buildASTWhileParsing;
+    }
+
+    /**
+     * When enabled, files read with {@link #parseFile(Path)} are tokenized by the hand-written
+     * {@link nl.han.ica.icss.parser.ICSSScanner} instead of the generated lexer. The tokens and errors are the same.
+     */
+    public void setUseScanner(boolean useScanner) {
+        this.useScanner = useScanner;
+    }
+
+    /**
+     * When enabled, parsing continues after an invalid value: the statement it is part of is left out,
+     * every error is reported and the AST holds all other statements. Otherwise the first invalid value ends the parse.
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+    /**
+     * Stops checking after this many semantic errors, for batch validation where knowing that a stylesheet fails is enough.
+     * {@link ErrorCollector#UNLIMITED} (the default) reports all of them.
+     */
+    public void setMaxSemanticErrors(int maxSemanticErrors) {
+        this.maxSemanticErrors = maxSemanticErrors;
+    }
+
+    /**
+     * Checks the style rules of a stylesheet concurrently, for large stylesheets. The errors are the same as without it.
+     */
+    public void setParallelCheck(boolean parallelCheck) {
+        this.parallelCheck = parallelCheck;
+    }
+
+    /**
+     * Transforms and generates the style rules of a stylesheet concurrently, for large stylesheets.
+     * The CSS is the same as without it. Persistent transforms and generating from the compact AST run on one thread.
+     */
+    public void setParallelTransform(boolean parallelTransform) {
+        this.parallelTransform = parallelTransform;
+    }
+
+    /**
+     * When enabled, a check only checks the style rules that changed since the last check, or of which a variable they name
+     * changed type. The errors of the other rules are taken from that check. The errors are the same as without it.
+     */
+    public void setIncrementalCheck(boolean incrementalCheck) {
+        this.ruleCheckCache = incrementalCheck ? new RuleCheckCache() : null;
+    }
+
+    /**
+     * The number of style rules the last check took from the previous check, 0 without incremental checks.
+     */
+    public int getReusedRuleCount() {
+        return ruleCheckCache != null ? ruleCheckCache.getReusedRuleCount() : 0;
+    }
+
+    /**
+     * The properties the check accepts and the types of their values, {@link PropertySchema#getDefault()} by default.
+     */
+    public void setPropertySchema(PropertySchema propertySchema) {
+        this.propertySchema = propertySchema;
+    }
+
+    /**
+     * The table the names of every parsed AST are interned in. By default each pipeline has a table of its own,
+     * {@link SymbolTable#global()} shares the names with all pipelines that use it.
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * When enabled, a parse or a loaded snapshot only keeps the {@link CompactAST} of a stylesheet, which takes about
+     * a fifth of the memory of the nodes. The first stage that needs nodes, a check, a transform or {@link #getAST()},
+     * expands it once and the later stages work on that expansion, so memory is only saved until then: for instance when
+     * a transformed snapshot is loaded and generated, generating reads the compact form directly.
+     * Edits then always parse the whole text.
+     */
+    public void setUseCompactAST(boolean useCompactAST) {
+        this.useCompactAST = useCompactAST;
+    }
+
+    /**
+     * When enabled, a transform leaves the checked AST unchanged and only copies the nodes it changes, see {@link Transform#transform(AST)}.
+     * The checked AST stays available, and edits after a transform still only parse the touched lines.
+     */
+    public void setPersistentTransforms(boolean persistentTransforms) {
+        this.persistentTransforms = persistentTransforms;
+    }
+
+    /**
+     * Whether the last two-stage parse needed the full LL fallback.
+     */
+    public boolean isFullContextFallbackUsed() {
+        return fullContextFallbackUsed;
+    }
+
     public void parseString(String input) {
+        parse(parser -> incrementalParser.parse(parser, input, this));
+    }
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
-        errors.clear();
-        try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
+    /**
+     * Replaces length characters at offset of the last string parsed with {@link #parseString(String)}
+     * by the replacement, and parses the result. When the AST has not been changed by a check with errors or a transform,
+     * only the stylerules and variable assignments the edit touches are parsed again and spliced into the existing AST.
+     */
+    public void applyEdit(int offset, int length, String replacement) {
+        final AST previous = astChangedSinceParse ? null : checkedAST != null ? checkedAST : ast;
+        if (previous != null) {
+            for (SemanticError error : errorsOnNodes) {
+                error.node.clearError();
+            }
+        }
+        parse(parser -> incrementalParser.applyEdit(parser, previous, offset, length, replacement, this));
+    }
 
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
+    /**
+     * Whether the last {@link #applyEdit} only had to parse the touched lines.
+     */
+    public boolean isLastParseIncremental() {
+        return incrementalParser.isLastParseIncremental();
+    }
 
-            ParseTree parseTree = parser.stylesheet();
+    /**
+     * Parses a file without reading it into a String first: the lexer reads straight from a read-only memory mapping.
+     */
+    public void parseFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBufferCharStream input = new ByteBufferCharStream(mapping, file.toString());
+            parse(parser -> parser.parse(input, this));
+        }
+    }
 
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+    /**
+     * Saves the AST of the last stage in a snapshot file, so a later run can continue from this stage
+     * with {@link #loadSnapshot(Path)} instead of parsing the stylesheet again.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        if (!parsed) {
+            throw new IllegalStateException("Only a stylesheet that was parsed without errors can be saved");
+        }
+
+        final byte stage = transformed ? ASTSnapshot.TRANSFORMED : checked ? ASTSnapshot.CHECKED : ASTSnapshot.PARSED;
+        if (ast == null && compactAST != null) {
+            try (OutputStream stream = Files.newOutputStream(file)) {
+                ASTSnapshot.write(compactAST, stage, stream);
+            }
+        } else {
+            ASTSnapshot.save(ast, stage, file);
+        }
+    }
 
-            this.ast = listener.getAST();
+    /**
+     * Continues from a snapshot saved by {@link #saveSnapshot(Path)}, without running the parser: the pipeline is
+     * in the stage the snapshot was saved after, so the next step is a check or a transform. Edits need a new parse first.
+     * The whole snapshot is decoded before this returns, into a compact AST or into nodes. A truncated or corrupt
+     * snapshot throws an {@link IOException} and leaves the pipeline as it was.
+     */
+    public void loadSnapshot(Path file) throws IOException {
+        ASTSnapshot snapshot = ASTSnapshot.open(file);
+        final CompactAST loadedCompactAST = useCompactAST ? snapshot.toCompactAST(symbolTable) : null;
+        final AST loadedAST = useCompactAST ? null : snapshot.toAST(symbolTable);
 
+        errors.clear();
+        syntaxErrors.clear();
+        semanticErrors.clear();
+        fullContextFallbackUsed = false;
+        astChangedSinceParse = false;
+        errorsOnNodes = Collections.emptyList();
+        incrementalParser.reset();
+        checkedAST = null;
+        variablesBound = false;
+        compactAST = loadedCompactAST;
+        keepsCompactAST = useCompactAST;
+        ast = loadedAST;
+
+        parsed = true;
+        checked = snapshot.getStage() >= ASTSnapshot.CHECKED;
+        transformed = snapshot.getStage() == ASTSnapshot.TRANSFORMED;
+    }
+
+    private void parse(Function<ReusableParser, AST> parse) {
+        errors.clear();
+        syntaxErrors.clear();
+        semanticErrors.clear();
+        fullContextFallbackUsed = false;
+        astChangedSinceParse = false;
+        errorsOnNodes = Collections.emptyList();
+        try {
+            //Lex and parse (with Antlr's generated lexer and parser) and extract the AST from the parse tree
+            ReusableParser parser = reuseParser ? ReusableParser.forCurrentThread() : new ReusableParser();
+            parser.setTwoStagePrediction(twoStagePrediction);
+            parser.setBuildASTWhileParsing(buildASTWhileParsing);
+            parser.setUseScanner(useScanner);
+            parser.setErrorRecovery(errorRecovery);
+            parser.setSymbolTable(symbolTable);
+
+            this.ast = parse.apply(parser);
+            fullContextFallbackUsed = parser.isFullContextFallbackUsed();
         } catch (RecognitionException e) {
-            this.ast = new AST();
+            this.ast = new AST(symbolTable);
             errors.add(e.getMessage());
 
         } catch (ParseCancellationException e) {
-            this.ast = new AST();
-            errors.add("Syntax error: " + e.getMessage());
+            this.ast = new AST(symbolTable);
+            addSyntaxError(new SyntaxError(e.getMessage()));
+        }
+        compactAST = null;
+        keepsCompactAST = useCompactAST;
+        checkedAST = null;
+        variablesBound = false;
+        if (useCompactAST) {
+            compactAST = CompactAST.of(ast);
+            ast = null;
+            incrementalParser.releaseAST();
         }
         parsed = errors.isEmpty();
         checked = transformed = false;
     }
 
     public boolean check() {
+        final AST ast = getAST();
         if (ast == null)
             return false;
 
-        (new Checker()).check(this.ast);
-
-        ArrayList<SemanticError> errors = this.ast.getErrors();
+        Checker checker = new Checker();
+        checker.setMaxErrors(maxSemanticErrors);
+        checker.setPropertySchema(propertySchema);
+        checker.setParallel(parallelCheck);
+        checker.setRuleCheckCache(ruleCheckCache);
+        List<SemanticError> errors = checker.check(ast).getErrors();
+        semanticErrors.clear();
+        semanticErrors.addAll(errors);
+        checkedAST = null;
+        //A check that stops at the maximum number of errors leaves the rest unbound, like the rules an incremental check
+        //did not check
+        variablesBound = errors.isEmpty() && getReusedRuleCount() == 0;
+        //Only the errors of a check are part of the compact form
         if (!errors.isEmpty()) {
-            for (SemanticError e : errors) {
-                this.errors.add(e.toString());
-            }
+            compactAST = null;
+        }
+
+        for (SemanticError e : errors) {
+            this.errors.add(e.toString());
         }
 
         checked = errors.isEmpty();
         transformed = false;
+        if (ruleCheckCache != null) {
+            errorsOnNodes = errors;
+        } else {
+            astChangedSinceParse |= !errors.isEmpty();
+        }
         return errors.isEmpty();
     }
 
     public void clearErrors() {
         errors.clear();
+        syntaxErrors.clear();
+        semanticErrors.clear();
     }
 
     public void transform() {
+        final AST ast = checkedAST != null ? checkedAST : getAST();
         if (ast == null)
             return;
 
-        (new EvalExpressions()).apply(ast);
-        (new RemoveIf()).apply(ast);
+        EvalExpressions evalExpressions = new EvalExpressions();
+        evalExpressions.setBindsVariables(!variablesBound);
+        if (persistentTransforms) {
+            checkedAST = ast;
+            this.ast = (new RemoveIf()).transform(evalExpressions.transform(ast));
+        } else {
+            RemoveIf removeIf = new RemoveIf();
+            evalExpressions.setParallel(parallelTransform);
+            removeIf.setParallel(parallelTransform);
+            evalExpressions.apply(ast);
+            removeIf.apply(ast);
+            variablesBound = false;
+            //The rules of the cache may have been changed along with the AST
+            if (ruleCheckCache != null) {
+                ruleCheckCache.clear();
+            }
+            astChangedSinceParse = true;
+        }
 
+        compactAST = null;
         transformed = errors.isEmpty();
     }
 
     public String generate() {
         Generator generator = new Generator();
-        return generator.generate(ast);
+        generator.setParallel(parallelTransform);
+        //The compact form is only read while it was not expanded, an expansion is generated as it is
+        return ast == null && compactAST != null ? generator.generate(compactAST) : generator.generate(ast);
     }
 
     //Catch ANTLR errors
@@ -145,6 +477,11 @@ public class Pipeline implements ANTLRErrorListener {
     @Override
     public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
                             int arg3, String arg4, RecognitionException arg5) {
-        errors.add("Syntax error: " + arg4);
+        addSyntaxError(new SyntaxError(arg2, arg3, arg4));
+    }
+
+    private void addSyntaxError(SyntaxError error) {
+        syntaxErrors.add(error);
+        errors.add(error.toString());
     }
 }
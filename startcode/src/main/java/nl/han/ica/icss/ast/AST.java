@@ -3,18 +3,26 @@ package nl.han.ica.icss.ast;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class AST {
     //The root of the tree
     public Stylesheet root;
+    //The names the nodes of the tree were interned in
+    public SymbolTable symbols;
 
     public AST() {
         root = new Stylesheet();
+        symbols = new SymbolTable();
     }
 
     public AST(Stylesheet stylesheet) {
         root = stylesheet;
+        symbols = new SymbolTable();
+    }
+
+    public AST(SymbolTable symbols) {
+        root = new Stylesheet();
+        this.symbols = symbols;
     }
 
     public void setRoot(Stylesheet stylesheet) {
@@ -31,8 +39,9 @@ public class AST {
         if (node.hasError()) {
             errors.add(node.getError());
         }
-        for (ASTNode child : node.getChildren()) {
-            collectErrors(errors, child);
+        final int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            collectErrors(errors, node.getChild(i));
         }
     }
 
@@ -45,12 +54,13 @@ public class AST {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
+        //The nodes compare by identity, two ASTs are equal when their stylesheets have the same content
         AST ast = (AST) o;
-        return Objects.equals(root, ast.root);
+        return root == ast.root || root != null && root.contentEquals(ast.root);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(root);
+        return root != null ? root.contentHash() : 0;
     }
 }
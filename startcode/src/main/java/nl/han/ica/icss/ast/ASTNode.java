@@ -4,10 +4,17 @@ import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ASTNode {
+public class ASTNode implements Cloneable {
+
+    //Nodes can be shared and do not know their parent, so one version for all nodes tells whether a cached hash is still valid.
+    //It is odd while cached hashes may be in use, only then a change has to move it on
+    private static final AtomicInteger CONTENT_VERSION = new AtomicInteger();
 
     private SemanticError error = null;
+    //The version (high half) and the value (low half) of the cached content hash, in one field so they are read together
+    private volatile long contentHash = 0;
 
     /*
      This method is used in the GUI to create an appropriate label
@@ -17,12 +24,82 @@ public class ASTNode {
         return "ASTNode";
     }
 
+    /*
+     Calls the visit method of the visitor for the class of this node.
+     */
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitNode(this);
+    }
+
     /*
      Different AST nodes use different attributes to store their children.
      This method provides a unified interface.
+     The list is a copy, traversals should use getChildCount and getChild which do not allocate.
      */
     public ArrayList<ASTNode> getChildren() {
-        return new ArrayList<>();
+        final int childCount = getChildCount();
+        ArrayList<ASTNode> children = new ArrayList<>(childCount);
+        for (int i = 0; i < childCount; i++) {
+            children.add(getChild(i));
+        }
+        return children;
+    }
+
+    /*
+     The number of children, in the same order as getChildren. Nodes with children override this and getChild.
+     */
+    public int getChildCount() {
+        return 0;
+    }
+
+    public ASTNode getChild(int index) {
+        throw childIndexOutOfBounds(index);
+    }
+
+    /*
+     Replaces the child at the index, which must exist.
+     */
+    public void setChild(int index, ASTNode child) {
+        throw childIndexOutOfBounds(index);
+    }
+
+    /*
+     A copy of this node that shares the children. Nodes that keep their children in lists copy those lists,
+     so children can be replaced, added and removed in the copy without changing this node.
+     */
+    public ASTNode copy() {
+        try {
+            return (ASTNode) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected IndexOutOfBoundsException childIndexOutOfBounds(int index) {
+        return new IndexOutOfBoundsException(String.format("Child index: %d, child count: %d", index, getChildCount()));
+    }
+
+    /*
+     Children of a node with two optional children, a missing (null) child is skipped.
+     */
+    protected int optionalChildCount(ASTNode first, ASTNode second) {
+        return (first != null ? 1 : 0) + (second != null ? 1 : 0);
+    }
+
+    protected ASTNode optionalChild(ASTNode first, ASTNode second, int index) {
+        return isFirstOptionalChild(first, second, index) ? first : second;
+    }
+
+    /*
+     Whether the index points to the first of the two optional children, otherwise it is the second one.
+     */
+    protected boolean isFirstOptionalChild(ASTNode first, ASTNode second, int index) {
+        if (index == 0 && first != null) {
+            return true;
+        } else if (index == optionalChildCount(first, second) - 1 && second != null) {
+            return false;
+        }
+        throw childIndexOutOfBounds(index);
     }
 
     /*
@@ -40,6 +117,91 @@ public class ASTNode {
         return this;
     }
 
+    /*
+     Removes the child itself rather than the first child that equals it, which also saves comparing whole subtrees.
+     */
+    protected void removeSameChild(List<? extends ASTNode> children, ASTNode child) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == child) {
+                children.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A hash of this subtree, computed from the labels of its nodes in the order of {@link #toString()}.
+     * It is the same in every run, so it can be stored to recognise an unchanged stylerule later.
+     * The hash is cached until a node changes, after that it is computed again on the next call.
+     */
+    public int contentHash() {
+        final int version = hashingVersion();
+        final long cached = contentHash;
+        if ((int) (cached >>> 32) == version) {
+            return (int) cached;
+        }
+
+        int hash = getNodeLabel().hashCode();
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            hash = 31 * hash + getChild(i).contentHash();
+        }
+
+        contentHash = ((long) version << 32) | (hash & 0xFFFFFFFFL);
+        return hash;
+    }
+
+    /*
+     The version to cache a hash with. An even version is made odd first, so the next change moves it on.
+     Parsing and transforming without hashing leave it even and do not write it at all.
+     */
+    private static int hashingVersion() {
+        int version = CONTENT_VERSION.get();
+        while ((version & 1) == 0) {
+            CONTENT_VERSION.compareAndSet(version, version + 1);
+            version = CONTENT_VERSION.get();
+        }
+        return version;
+    }
+
+    /**
+     * Invalidates the cached content hashes of all nodes. The methods that change a node call this themselves
+     * after the change, code that assigns the fields of a node directly calls it afterwards.
+     */
+    public void contentChanged() {
+        final int version = CONTENT_VERSION.get();
+        if ((version & 1) != 0) {
+            CONTENT_VERSION.compareAndSet(version, version + 1);
+        }
+    }
+
+    /**
+     * Whether the other subtree has the same content: nodes of the same classes with the same labels, in the same order.
+     * {@link #equals(Object)} compares nodes by identity, so nodes can be kept in hash based collections while they change.
+     */
+    public boolean contentEquals(ASTNode other) {
+        if (this == other)
+            return true;
+        if (other == null)
+            return false;
+        //Different content hashes rule out equal subtrees without comparing them
+        if (contentHash() != other.contentHash())
+            return false;
+        //Equal hashes do not rule out different nodes, their labels hold the fields that are not children
+        if (getClass() != other.getClass() || !getNodeLabel().equals(other.getNodeLabel()))
+            return false;
+        //Compare all children
+        final int childCount = this.getChildCount();
+        if (other.getChildCount() != childCount)
+            return false;
+        for (int i = 0; i < childCount; i++) {
+            if (!this.getChild(i).contentEquals(other.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public SemanticError getError() {
         return this.error;
     }
@@ -48,6 +210,10 @@ public class ASTNode {
         this.error = new SemanticError(description);
     }
 
+    public void clearError() {
+        this.error = null;
+    }
+
     public boolean hasError() {
         return error != null;
     }
@@ -63,26 +229,10 @@ public class ASTNode {
         builder.append("[");
         builder.append(getNodeLabel());
         builder.append("|");
-        for (ASTNode child : getChildren()) {
-            child.toString(builder);
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            getChild(i).toString(builder);
         }
         builder.append("]");
     }
-
-    @Override
-    public boolean equals(Object o) {
-        if (!(o instanceof ASTNode))
-            return false;
-        //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if (otherChildren.size() != thisChildren.size())
-            return false;
-        for (int i = 0; i < thisChildren.size(); i++) {
-            if (!thisChildren.get(i).equals(otherChildren.get(i))) {
-                return false;
-            }
-        }
-        return true;
-    }
 }
@@ -0,0 +1,319 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * An AST stored in a binary file, so a stylesheet that did not change can be checked or transformed again without parsing it.
+ * <p>
+ * The file starts with a header: the magic bytes "ICSS", the format version and the stage the AST was saved after,
+ * followed by the number of nodes. Then comes a table of the names, colors and error descriptions the nodes refer to,
+ * each string once, and the nodes of the {@link CompactAST} form in preorder: the kind with error flags, the value and
+ * the number of children. All numbers after the header are varints, a symbol value is the index of its string in the table.
+ * <p>
+ * {@link #open(Path)} maps the file and only reads the header and the string table. {@link #toCompactAST(SymbolTable)} then
+ * decodes all nodes at once, the decode is not lazy: only the strings are decoded when a node first uses them.
+ */
+public class ASTSnapshot {
+
+    public static final int FORMAT_VERSION = 1;
+
+    //The stages an AST can be saved after
+    public static final byte PARSED = 0;
+    public static final byte CHECKED = 1;
+    public static final byte TRANSFORMED = 2;
+
+    private static final byte[] MAGIC = {'I', 'C', 'S', 'S'};
+
+    //Flags above the kind of a node record
+    private static final int HAS_ERROR = 0x40;
+    private static final int HAS_NAME_ERROR = 0x20;
+    private static final int KIND_MASK = 0x1F;
+
+    private final ByteBuffer buffer;
+    private final byte stage;
+    private final int nodeCount;
+    //Start of every string in the buffer, the strings themselves are decoded when a node needs them
+    private final int[] stringOffsets;
+    private final int nodesOffset;
+
+    private ASTSnapshot(ByteBuffer buffer, byte stage, int nodeCount, int[] stringOffsets, int nodesOffset) {
+        this.buffer = buffer;
+        this.stage = stage;
+        this.nodeCount = nodeCount;
+        this.stringOffsets = stringOffsets;
+        this.nodesOffset = nodesOffset;
+    }
+
+    /**
+     * Writes the AST to the file, replacing what was there. The stage is stored with it, see {@link #getStage()}.
+     */
+    public static void save(AST ast, byte stage, Path file) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            write(CompactAST.of(ast), stage, stream);
+        }
+    }
+
+    /**
+     * Writes the compact AST in the snapshot format.
+     */
+    public static void write(CompactAST ast, byte stage, OutputStream stream) throws IOException {
+        final int size = ast.size();
+        if (size == 0) {
+            throw new IllegalArgumentException("An empty compact AST has no stylesheet to save");
+        }
+
+        //The strings are numbered in the order the nodes first use them
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        for (int node = 0; node < size; node++) {
+            final byte kind = ast.getKind(node);
+            if (CompactAST.hasSymbolValue(kind) && ast.getValue(node) != SymbolTable.NO_SYMBOL) {
+                strings.putIfAbsent(ast.getName(node), strings.size());
+            }
+            if (ast.getError(node) != null) {
+                strings.putIfAbsent(ast.getError(node).description, strings.size());
+            }
+            if (ast.getNameError(node) != null) {
+                strings.putIfAbsent(ast.getNameError(node).description, strings.size());
+            }
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.write(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeByte(stage);
+        writeVarint(output, size);
+
+        writeVarint(output, strings.size());
+        for (String string : strings.keySet()) {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(output, bytes.length);
+            output.write(bytes);
+        }
+
+        for (int node = 0; node < size; node++) {
+            final byte kind = ast.getKind(node);
+            final SemanticError error = ast.getError(node);
+            final SemanticError nameError = ast.getNameError(node);
+            output.writeByte(kind | (error != null ? HAS_ERROR : 0) | (nameError != null ? HAS_NAME_ERROR : 0));
+
+            final int value = ast.getValue(node);
+            if (CompactAST.hasSymbolValue(kind)) {
+                //0 is no symbol, the strings are numbered from 1
+                writeVarint(output, value == SymbolTable.NO_SYMBOL ? 0 : strings.get(ast.getName(node)) + 1);
+            } else {
+                //Literals can be negative, zigzag encoding keeps small negative numbers short
+                writeVarint(output, (value << 1) ^ (value >> 31));
+            }
+
+            int childCount = 0;
+            for (int child = ast.getFirstChild(node); child != CompactAST.NONE; child = ast.getNextSibling(child)) {
+                childCount++;
+            }
+            writeVarint(output, childCount);
+
+            if (error != null) {
+                writeVarint(output, strings.get(error.description));
+            }
+            if (nameError != null) {
+                writeVarint(output, strings.get(nameError.description));
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Maps the file and checks its header. The mapping is read-only and stays valid after the file is closed.
+     */
+    public static ASTSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the header and the string table of a snapshot in the buffer, from its position.
+     */
+    public static ASTSnapshot read(ByteBuffer buffer) throws IOException {
+        ByteBuffer input = buffer.slice();
+        try {
+            for (byte magic : MAGIC) {
+                if (input.get() != magic) {
+                    throw new IOException("Not an AST snapshot");
+                }
+            }
+            final int version = input.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported snapshot version: %d, expected: %d", version, FORMAT_VERSION));
+            }
+            final byte stage = input.get();
+            final int nodeCount = readVarint(input);
+
+            final int[] stringOffsets = new int[readVarint(input)];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = input.position();
+                final int length = readVarint(input);
+                input.position(input.position() + length);
+            }
+
+            return new ASTSnapshot(input, stage, nodeCount, stringOffsets, input.position());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("The AST snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * The stage the AST was saved after: {@link #PARSED}, {@link #CHECKED} or {@link #TRANSFORMED}.
+     */
+    public byte getStage() {
+        return stage;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Decodes all nodes into columns on the Java heap, the names are interned in the symbol table.
+     * A truncated or corrupt node section throws an {@link IOException}.
+     */
+    public CompactAST toCompactAST(SymbolTable symbols) throws IOException {
+        CompactAST ast = new CompactAST(symbols, nodeCount, false);
+        ByteBuffer input = buffer.duplicate();
+        input.position(nodesOffset);
+        NodeReader reader = new NodeReader(ast, input);
+        try {
+            reader.readNode();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("The AST snapshot is truncated", e);
+        }
+        if (ast.size() != nodeCount) {
+            throw new IOException(String.format("The AST snapshot has %d nodes, its header: %d", ast.size(), nodeCount));
+        }
+        if (ast.getKind(ast.getRoot()) != CompactAST.STYLESHEET) {
+            throw new IOException("The AST snapshot does not start with a stylesheet");
+        }
+        return ast;
+    }
+
+    /**
+     * Decodes all nodes into a new AST, the names are interned in the symbol table.
+     * A truncated or corrupt snapshot throws an {@link IOException}.
+     */
+    public AST toAST(SymbolTable symbols) throws IOException {
+        CompactAST ast = toCompactAST(symbols);
+        try {
+            return ast.toAST();
+        } catch (ClassCastException | IndexOutOfBoundsException e) {
+            //A node with children of the wrong kinds, such as a declaration in an expression
+            throw new IOException("The AST snapshot is corrupt", e);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            final byte b = input.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than an int");
+    }
+
+    /*
+     Reads the node records in preorder. The symbol id of every string is looked up once, the first time a node uses it.
+     */
+    private class NodeReader {
+        private final CompactAST ast;
+        private final ByteBuffer input;
+        private final int[] symbolIds;
+        private final String[] decoded;
+
+        NodeReader(CompactAST ast, ByteBuffer input) {
+            this.ast = ast;
+            this.input = input;
+            this.symbolIds = new int[stringOffsets.length];
+            this.decoded = new String[stringOffsets.length];
+            Arrays.fill(symbolIds, SymbolTable.NO_SYMBOL);
+        }
+
+        int readNode() throws IOException {
+            final int flags = input.get();
+            final byte kind = (byte) (flags & KIND_MASK);
+            if (kind > CompactAST.LAST_KIND || (flags & ~(KIND_MASK | HAS_ERROR | HAS_NAME_ERROR)) != 0) {
+                throw new IOException(String.format("The AST snapshot has an invalid node kind: %d", flags));
+            }
+            if (ast.size() == nodeCount) {
+                throw new IOException(String.format("The AST snapshot has more nodes than its header: %d", nodeCount));
+            }
+            final int encoded = readVarint(input);
+            final int value;
+            if (CompactAST.hasSymbolValue(kind)) {
+                value = encoded == 0 ? SymbolTable.NO_SYMBOL : symbolId(encoded - 1);
+            } else {
+                value = (encoded >>> 1) ^ -(encoded & 1);
+            }
+            final int childCount = readVarint(input);
+
+            final int id = ast.append(kind, value);
+            if ((flags & HAS_ERROR) != 0) {
+                ast.setError(id, new SemanticError(string(readVarint(input))));
+            }
+            if ((flags & HAS_NAME_ERROR) != 0) {
+                ast.setNameError(id, new SemanticError(string(readVarint(input))));
+            }
+
+            int previous = CompactAST.NONE;
+            for (int i = 0; i < childCount; i++) {
+                final int child = readNode();
+                ast.link(id, previous, child);
+                previous = child;
+            }
+            return id;
+        }
+
+        private int symbolId(int index) throws IOException {
+            if (symbolIds[index] == SymbolTable.NO_SYMBOL) {
+                symbolIds[index] = ast.getSymbols().intern(string(index));
+            }
+            return symbolIds[index];
+        }
+
+        private String string(int index) throws IOException {
+            if (index < 0 || index >= decoded.length) {
+                throw new IOException(String.format("The AST snapshot refers to string %d of %d", index, decoded.length));
+            }
+            if (decoded[index] == null) {
+                ByteBuffer string = buffer.duplicate();
+                string.position(stringOffsets[index]);
+                final byte[] bytes = new byte[readVarint(string)];
+                string.get(bytes);
+                decoded[index] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return decoded[index];
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * Visits a node through {@link ASTNode#accept(ASTVisitor)}, so a pass dispatches with one virtual call instead of a chain of instanceof checks.
+ * Every method falls back to the method of the superclass of its node, down to {@link #visitNode(ASTNode)},
+ * so a visitor only implements the nodes it is interested in.
+ */
+public abstract class ASTVisitor<R> {
+
+    public R visitNode(ASTNode node) {
+        return null;
+    }
+
+    public R visitStylesheet(Stylesheet stylesheet) {
+        return visitNode(stylesheet);
+    }
+
+    public R visitStylerule(Stylerule stylerule) {
+        return visitNode(stylerule);
+    }
+
+    public R visitDeclaration(Declaration declaration) {
+        return visitNode(declaration);
+    }
+
+    public R visitPropertyName(PropertyName propertyName) {
+        return visitNode(propertyName);
+    }
+
+    public R visitVariableAssignment(VariableAssignment variableAssignment) {
+        return visitNode(variableAssignment);
+    }
+
+    public R visitIfClause(IfClause ifClause) {
+        return visitNode(ifClause);
+    }
+
+    public R visitElseClause(ElseClause elseClause) {
+        return visitNode(elseClause);
+    }
+
+    public R visitSelector(Selector selector) {
+        return visitNode(selector);
+    }
+
+    public R visitTagSelector(TagSelector selector) {
+        return visitSelector(selector);
+    }
+
+    public R visitClassSelector(ClassSelector selector) {
+        return visitSelector(selector);
+    }
+
+    public R visitIdSelector(IdSelector selector) {
+        return visitSelector(selector);
+    }
+
+    public R visitExpression(Expression expression) {
+        return visitNode(expression);
+    }
+
+    public R visitVariableReference(VariableReference variableReference) {
+        return visitExpression(variableReference);
+    }
+
+    public R visitBooleanExpression(BooleanExpression booleanExpression) {
+        return visitExpression(booleanExpression);
+    }
+
+    public R visitBooleanComparison(BooleanComparison booleanComparison) {
+        return visitExpression(booleanComparison);
+    }
+
+    public R visitOperation(Operation operation) {
+        return visitExpression(operation);
+    }
+
+    public R visitAddOperation(AddOperation operation) {
+        return visitOperation(operation);
+    }
+
+    public R visitSubtractOperation(SubtractOperation operation) {
+        return visitOperation(operation);
+    }
+
+    public R visitMultiplyOperation(MultiplyOperation operation) {
+        return visitOperation(operation);
+    }
+
+    public R visitLiteral(Literal literal) {
+        return visitExpression(literal);
+    }
+
+    public R visitBoolLiteral(BoolLiteral literal) {
+        return visitLiteral(literal);
+    }
+
+    public R visitColorLiteral(ColorLiteral literal) {
+        return visitLiteral(literal);
+    }
+
+    public R visitPercentageLiteral(PercentageLiteral literal) {
+        return visitLiteral(literal);
+    }
+
+    public R visitPixelLiteral(PixelLiteral literal) {
+        return visitLiteral(literal);
+    }
+
+    public R visitScalarLiteral(ScalarLiteral literal) {
+        return visitLiteral(literal);
+    }
+}
@@ -0,0 +1,18 @@
+package nl.han.ica.icss.ast;
+
+public enum ArithmeticOperator {
+    ADD("+"),
+    SUBTRACT("-"),
+    MULTIPLY("*");
+
+    private final String stringValue;
+
+    ArithmeticOperator(String s) {
+        this.stringValue = s;
+    }
+
+    @Override
+    public String toString() {
+        return this.stringValue;
+    }
+}
@@ -29,13 +29,28 @@ public class BooleanComparison extends Expression {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if (left != null)
-            children.add(left);
-        if (right != null)
-            children.add(right);
-        return children;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBooleanComparison(this);
+    }
+
+    @Override
+    public int getChildCount() {
+        return optionalChildCount(left, right);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return optionalChild(left, right, index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        if (isFirstOptionalChild(left, right, index)) {
+            left = (Expression) child;
+        } else {
+            right = (Expression) child;
+        }
+        contentChanged();
     }
 
     @Override
@@ -45,6 +60,7 @@ public class BooleanComparison extends Expression {
         } else if (this.right == null) {
             this.right = (Expression) child;
         }
+        contentChanged();
         return this;
     }
 
@@ -54,6 +70,7 @@ public class BooleanComparison extends Expression {
 
     public void setOperator(ComparisonOperator operator) {
         this.operator = operator;
+        contentChanged();
     }
 
     public Expression getLeft() {
@@ -62,6 +79,7 @@ public class BooleanComparison extends Expression {
 
     public void setLeft(Expression left) {
         this.left = left;
+        contentChanged();
     }
 
     public Expression getRight() {
@@ -70,6 +88,7 @@ public class BooleanComparison extends Expression {
 
     public void setRight(Expression right) {
         this.right = right;
+        contentChanged();
     }
 
     public boolean isNegated() {
@@ -78,5 +97,6 @@ public class BooleanComparison extends Expression {
 
     public void setNegated(boolean negated) {
         isNegated = negated;
+        contentChanged();
     }
 }
@@ -24,6 +24,7 @@ public class BooleanExpression extends Expression {
         if (child instanceof Expression) {
             this.expression = (Expression) child;
         }
+        contentChanged();
         return this;
     }
 
@@ -33,11 +34,25 @@ public class BooleanExpression extends Expression {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if (expression != null)
-            children.add(expression);
-        return children;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBooleanExpression(this);
+    }
+
+    @Override
+    public int getChildCount() {
+        return optionalChildCount(expression, null);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return optionalChild(expression, null, index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        optionalChild(expression, null, index);
+        expression = (Expression) child;
+        contentChanged();
     }
 
     public boolean isNegated() {
@@ -46,6 +61,7 @@ public class BooleanExpression extends Expression {
 
     public void setNegated(boolean negated) {
         isNegated = negated;
+        contentChanged();
     }
 
     public Expression getExpression() {
@@ -54,5 +70,6 @@ public class BooleanExpression extends Expression {
 
     public void setExpression(Expression expression) {
         this.expression = expression;
+        contentChanged();
     }
 }
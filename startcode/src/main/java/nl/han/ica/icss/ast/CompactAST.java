@@ -0,0 +1,453 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+
+/**
+ * An AST stored as parallel columns indexed by node id, instead of an object per node, for stylesheets that are too large
+ * to keep as objects. Every node has a kind, a first child, a next sibling and one int value: the symbol id of a name,
+ * the number of a literal or the flags of an expression. The property of a declaration and the name of a variable assignment
+ * are the value of that node, so they do not take a node of their own.
+ * <p>
+ * Node 0 is the stylesheet and parents are numbered before their children. The columns can be kept outside the Java heap.
+ * The passes that change the tree run on the object AST of {@link #toAST()}, the
+ * {@link nl.han.ica.icss.generator.Generator} reads this form directly.
+ */
+public class CompactAST {
+
+    public static final int NONE = -1;
+
+    //Node kinds
+    public static final byte STYLESHEET = 0;
+    public static final byte STYLERULE = 1;
+    public static final byte TAG_SELECTOR = 2;
+    public static final byte CLASS_SELECTOR = 3;
+    public static final byte ID_SELECTOR = 4;
+    public static final byte DECLARATION = 5;
+    public static final byte PROPERTY_NAME = 6;
+    public static final byte VARIABLE_ASSIGNMENT = 7;
+    public static final byte VARIABLE_REFERENCE = 8;
+    public static final byte IF_CLAUSE = 9;
+    public static final byte ELSE_CLAUSE = 10;
+    public static final byte PIXEL_LITERAL = 11;
+    public static final byte PERCENTAGE_LITERAL = 12;
+    public static final byte SCALAR_LITERAL = 13;
+    public static final byte COLOR_LITERAL = 14;
+    public static final byte BOOL_LITERAL = 15;
+    public static final byte ADD_OPERATION = 16;
+    public static final byte SUBTRACT_OPERATION = 17;
+    public static final byte MULTIPLY_OPERATION = 18;
+    public static final byte BOOLEAN_EXPRESSION = 19;
+    public static final byte BOOLEAN_COMPARISON = 20;
+    //The kind with the highest number, the kinds are numbered from 0
+    public static final byte LAST_KIND = BOOLEAN_COMPARISON;
+
+    //Flags in the value of operations and comparisons, an operand can be missing in an unfinished tree
+    private static final int HAS_FIRST = 1;
+    private static final int HAS_SECOND = 2;
+    private static final int NEGATED = 4;
+    //The comparison operator is stored above the flags, as its ordinal + 1 (0 is no operator)
+    private static final int OPERATOR_SHIFT = 3;
+
+    private static final ComparisonOperator[] OPERATORS = ComparisonOperator.values();
+
+    private final SymbolTable symbols;
+    private final ByteBuffer kinds;
+    private final IntBuffer firstChildren;
+    private final IntBuffer nextSiblings;
+    private final IntBuffer values;
+    private int size = 0;
+    //Semantic errors are rare, so they are kept by node id; the name errors belong to the folded property or variable name
+    private final HashMap<Integer, SemanticError> errors = new HashMap<>();
+    private final HashMap<Integer, SemanticError> nameErrors = new HashMap<>();
+
+    CompactAST(SymbolTable symbols, int capacity, boolean offHeap) {
+        this.symbols = symbols;
+        this.kinds = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        this.firstChildren = intColumn(capacity, offHeap);
+        this.nextSiblings = intColumn(capacity, offHeap);
+        this.values = intColumn(capacity, offHeap);
+    }
+
+    private static IntBuffer intColumn(int capacity, boolean offHeap) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return IntBuffer.allocate(capacity);
+    }
+
+    /**
+     * Stores the AST in columns on the Java heap. The names are interned in the symbol table of the AST.
+     */
+    public static CompactAST of(AST ast) {
+        return of(ast, false);
+    }
+
+    /**
+     * Stores the AST in columns, outside the Java heap when offHeap is set.
+     */
+    public static CompactAST of(AST ast, boolean offHeap) {
+        CompactAST compact = new CompactAST(ast.symbols, countNodes(ast.root), offHeap);
+        compact.add(ast.root);
+        return compact;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * The number of nodes, the node ids are 0 until size.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getRoot() {
+        return 0;
+    }
+
+    public byte getKind(int node) {
+        return kinds.get(node);
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren.get(node);
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings.get(node);
+    }
+
+    public int getValue(int node) {
+        return values.get(node);
+    }
+
+    /**
+     * The name of a selector, variable reference, declaration (its property) or variable assignment, or null when it has none.
+     */
+    public String getName(int node) {
+        final int symbolId = values.get(node);
+        return symbolId == SymbolTable.NO_SYMBOL ? null : symbols.getName(symbolId);
+    }
+
+    public SemanticError getError(int node) {
+        return errors.get(node);
+    }
+
+    /**
+     * The error of the property of a declaration or the name of a variable assignment, which are folded into that node.
+     */
+    public SemanticError getNameError(int node) {
+        return nameErrors.get(node);
+    }
+
+    /**
+     * Whether the value of nodes of this kind is a symbol id.
+     */
+    public static boolean hasSymbolValue(byte kind) {
+        return kind == TAG_SELECTOR || kind == CLASS_SELECTOR || kind == ID_SELECTOR || kind == DECLARATION
+                || kind == PROPERTY_NAME || kind == VARIABLE_ASSIGNMENT || kind == VARIABLE_REFERENCE || kind == COLOR_LITERAL;
+    }
+
+    /**
+     * Expands the whole tree into nodes, for the passes that work on objects. The AST shares the symbol table.
+     */
+    public AST toAST() {
+        AST ast = new AST(symbols);
+        ast.setRoot((Stylesheet) toASTNode(getRoot()));
+        return ast;
+    }
+
+    /**
+     * Expands the subtree of one node into new objects.
+     */
+    public ASTNode toASTNode(int node) {
+        ASTNode result = createNode(node);
+        if (errors.containsKey(node)) {
+            result.setError(errors.get(node).description);
+        }
+
+        final byte kind = kinds.get(node);
+        //An operand can only be missing in an unfinished tree, then the only child may be the second operand
+        boolean isFirstOperand = (values.get(node) & HAS_FIRST) != 0;
+        for (int child = firstChildren.get(node); child != NONE; child = nextSiblings.get(child)) {
+            ASTNode childNode = toASTNode(child);
+
+            if (kind == VARIABLE_ASSIGNMENT) {
+                ((VariableAssignment) result).expression = (Expression) childNode;
+            } else if (kind == ADD_OPERATION || kind == SUBTRACT_OPERATION || kind == MULTIPLY_OPERATION) {
+                if (isFirstOperand) {
+                    ((Operation) result).lhs = (Expression) childNode;
+                } else {
+                    ((Operation) result).rhs = (Expression) childNode;
+                }
+                isFirstOperand = false;
+            } else if (kind == BOOLEAN_COMPARISON) {
+                if (isFirstOperand) {
+                    ((BooleanComparison) result).setLeft((Expression) childNode);
+                } else {
+                    ((BooleanComparison) result).setRight((Expression) childNode);
+                }
+                isFirstOperand = false;
+            } else {
+                result.addChild(childNode);
+            }
+        }
+
+        return result;
+    }
+
+    private ASTNode createNode(int node) {
+        final int value = values.get(node);
+
+        switch (kinds.get(node)) {
+            case STYLESHEET:
+                return new Stylesheet();
+            case STYLERULE:
+                return new Stylerule();
+            case TAG_SELECTOR:
+                return new TagSelector(getName(node));
+            case CLASS_SELECTOR:
+                return new ClassSelector(getName(node));
+            case ID_SELECTOR:
+                return new IdSelector(getName(node));
+            case DECLARATION:
+                Declaration declaration = new Declaration();
+                if (value != SymbolTable.NO_SYMBOL) {
+                    declaration.property = withNameError(new PropertyName(getName(node), value), node);
+                }
+                return declaration;
+            case PROPERTY_NAME:
+                return new PropertyName(getName(node), value);
+            case VARIABLE_ASSIGNMENT:
+                VariableAssignment variableAssignment = new VariableAssignment();
+                if (value != SymbolTable.NO_SYMBOL) {
+                    variableAssignment.name = withNameError(new VariableReference(getName(node), value), node);
+                }
+                return variableAssignment;
+            case VARIABLE_REFERENCE:
+                return new VariableReference(getName(node), value);
+            case IF_CLAUSE:
+                return new IfClause();
+            case ELSE_CLAUSE:
+                return new ElseClause();
+            case PIXEL_LITERAL:
+                return PixelLiteral.valueOf(value);
+            case PERCENTAGE_LITERAL:
+                return PercentageLiteral.valueOf(value);
+            case SCALAR_LITERAL:
+                return ScalarLiteral.valueOf(value);
+            case COLOR_LITERAL:
+                return ColorLiteral.valueOf(getName(node));
+            case BOOL_LITERAL:
+                return BoolLiteral.valueOf(value != 0);
+            case ADD_OPERATION:
+                return new AddOperation();
+            case SUBTRACT_OPERATION:
+                return new SubtractOperation();
+            case MULTIPLY_OPERATION:
+                return new MultiplyOperation();
+            case BOOLEAN_EXPRESSION:
+                return new BooleanExpression((value & NEGATED) != 0);
+            case BOOLEAN_COMPARISON:
+                final int operator = value >>> OPERATOR_SHIFT;
+                BooleanComparison booleanComparison = new BooleanComparison((value & NEGATED) != 0);
+                booleanComparison.setOperator(operator == 0 ? null : OPERATORS[operator - 1]);
+                return booleanComparison;
+            default:
+                throw new IllegalStateException(String.format("Unknown node kind: %d", kinds.get(node)));
+        }
+    }
+
+    private <T extends ASTNode> T withNameError(T name, int node) {
+        if (nameErrors.containsKey(node)) {
+            name.setError(nameErrors.get(node).description);
+        }
+        return name;
+    }
+
+    /*
+     Counts the nodes the compact form needs, the folded names are left out.
+     */
+    private static int countNodes(ASTNode node) {
+        int count = 1;
+        final int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (!isFoldedName(node, node.getChild(i))) {
+                count += countNodes(node.getChild(i));
+            }
+        }
+        return count;
+    }
+
+    private static boolean isFoldedName(ASTNode parent, ASTNode child) {
+        return (parent instanceof Declaration && child == ((Declaration) parent).property)
+                || (parent instanceof VariableAssignment && child == ((VariableAssignment) parent).name);
+    }
+
+    private int add(ASTNode node) {
+        final int id = append(kindOf(node), valueOf(node));
+        if (node.hasError()) {
+            errors.put(id, node.getError());
+        }
+
+        int previous = NONE;
+        final int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            ASTNode child = node.getChild(i);
+            if (isFoldedName(node, child)) {
+                if (child.hasError()) {
+                    nameErrors.put(id, child.getError());
+                }
+                continue;
+            }
+
+            final int childId = add(child);
+            link(id, previous, childId);
+            previous = childId;
+        }
+
+        return id;
+    }
+
+    /*
+     Adds a node without children, its id is the next free one.
+     */
+    int append(byte kind, int value) {
+        final int id = size++;
+        kinds.put(id, kind);
+        values.put(id, value);
+        firstChildren.put(id, NONE);
+        nextSiblings.put(id, NONE);
+        return id;
+    }
+
+    /*
+     Makes the child the first child of the parent, or the next sibling of previous when that is not NONE.
+     */
+    void link(int parent, int previous, int child) {
+        if (previous == NONE) {
+            firstChildren.put(parent, child);
+        } else {
+            nextSiblings.put(previous, child);
+        }
+    }
+
+    void setError(int node, SemanticError error) {
+        errors.put(node, error);
+    }
+
+    void setNameError(int node, SemanticError error) {
+        nameErrors.put(node, error);
+    }
+
+    private static byte kindOf(ASTNode node) {
+        if (node instanceof Stylesheet) {
+            return STYLESHEET;
+        } else if (node instanceof Stylerule) {
+            return STYLERULE;
+        } else if (node instanceof TagSelector) {
+            return TAG_SELECTOR;
+        } else if (node instanceof ClassSelector) {
+            return CLASS_SELECTOR;
+        } else if (node instanceof IdSelector) {
+            return ID_SELECTOR;
+        } else if (node instanceof Declaration) {
+            return DECLARATION;
+        } else if (node instanceof PropertyName) {
+            return PROPERTY_NAME;
+        } else if (node instanceof VariableAssignment) {
+            return VARIABLE_ASSIGNMENT;
+        } else if (node instanceof VariableReference) {
+            return VARIABLE_REFERENCE;
+        } else if (node instanceof IfClause) {
+            return IF_CLAUSE;
+        } else if (node instanceof ElseClause) {
+            return ELSE_CLAUSE;
+        } else if (node instanceof PixelLiteral) {
+            return PIXEL_LITERAL;
+        } else if (node instanceof PercentageLiteral) {
+            return PERCENTAGE_LITERAL;
+        } else if (node instanceof ScalarLiteral) {
+            return SCALAR_LITERAL;
+        } else if (node instanceof ColorLiteral) {
+            return COLOR_LITERAL;
+        } else if (node instanceof BoolLiteral) {
+            return BOOL_LITERAL;
+        } else if (node instanceof AddOperation) {
+            return ADD_OPERATION;
+        } else if (node instanceof SubtractOperation) {
+            return SUBTRACT_OPERATION;
+        } else if (node instanceof MultiplyOperation) {
+            return MULTIPLY_OPERATION;
+        } else if (node instanceof BooleanExpression) {
+            return BOOLEAN_EXPRESSION;
+        } else if (node instanceof BooleanComparison) {
+            return BOOLEAN_COMPARISON;
+        }
+
+        throw new IllegalArgumentException(String.format("Unsupported node: %s", node.getClass().getSimpleName()));
+    }
+
+    private int valueOf(ASTNode node) {
+        if (node instanceof TagSelector) {
+            return symbols.intern(((TagSelector) node).tag);
+        } else if (node instanceof ClassSelector) {
+            return symbols.intern(((ClassSelector) node).cls);
+        } else if (node instanceof IdSelector) {
+            return symbols.intern(((IdSelector) node).id);
+        } else if (node instanceof Declaration) {
+            final PropertyName property = ((Declaration) node).property;
+            return property == null ? SymbolTable.NO_SYMBOL : symbolOf(property.name, property.symbolId);
+        } else if (node instanceof PropertyName) {
+            return symbolOf(((PropertyName) node).name, ((PropertyName) node).symbolId);
+        } else if (node instanceof VariableAssignment) {
+            final VariableReference name = ((VariableAssignment) node).name;
+            return name == null ? SymbolTable.NO_SYMBOL : symbolOf(name.name, name.symbolId);
+        } else if (node instanceof VariableReference) {
+            return symbolOf(((VariableReference) node).name, ((VariableReference) node).symbolId);
+        } else if (node instanceof PixelLiteral) {
+            return ((PixelLiteral) node).value;
+        } else if (node instanceof PercentageLiteral) {
+            return ((PercentageLiteral) node).value;
+        } else if (node instanceof ScalarLiteral) {
+            return ((ScalarLiteral) node).value;
+        } else if (node instanceof ColorLiteral) {
+            return symbols.intern(((ColorLiteral) node).value);
+        } else if (node instanceof BoolLiteral) {
+            return ((BoolLiteral) node).value ? 1 : 0;
+        } else if (node instanceof Operation) {
+            return operandFlags(((Operation) node).lhs, ((Operation) node).rhs);
+        } else if (node instanceof BooleanExpression) {
+            return ((BooleanExpression) node).isNegated() ? NEGATED : 0;
+        } else if (node instanceof BooleanComparison) {
+            BooleanComparison booleanComparison = (BooleanComparison) node;
+            final ComparisonOperator operator = booleanComparison.getOperator();
+            return operandFlags(booleanComparison.getLeft(), booleanComparison.getRight())
+                    | (booleanComparison.isNegated() ? NEGATED : 0)
+                    | (operator == null ? 0 : operator.ordinal() + 1) << OPERATOR_SHIFT;
+        }
+
+        return 0;
+    }
+
+    private int symbolOf(String name, int symbolId) {
+        return symbolId != SymbolTable.NO_SYMBOL ? symbolId : symbols.intern(name);
+    }
+
+    private static int operandFlags(Expression first, Expression second) {
+        return (first != null ? HAS_FIRST : 0) | (second != null ? HAS_SECOND : 0);
+    }
+}
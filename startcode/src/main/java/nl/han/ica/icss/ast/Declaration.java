@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 /*
  * A Declaration defines a style property. Declarations are things like "width: 100px"
@@ -25,14 +24,28 @@ public class Declaration extends ASTNode {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitDeclaration(this);
+    }
 
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if (property != null)
-            children.add(property);
-        if (expression != null)
-            children.add(expression);
-        return children;
+    @Override
+    public int getChildCount() {
+        return optionalChildCount(property, expression);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return optionalChild(property, expression, index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        if (isFirstOptionalChild(property, expression, index)) {
+            property = (PropertyName) child;
+        } else {
+            expression = (Expression) child;
+        }
+        contentChanged();
     }
 
     @Override
@@ -42,21 +55,7 @@ public class Declaration extends ASTNode {
         } else if (child instanceof Expression) {
             expression = (Expression) child;
         }
+        contentChanged();
         return this;
     }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        Declaration that = (Declaration) o;
-        return Objects.equals(property, that.property) &&
-                Objects.equals(expression, that.expression);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(property, expression);
-    }
 }
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class ElseClause extends ASTNode {
 
@@ -21,39 +20,46 @@ public class ElseClause extends ASTNode {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.addAll(body);
-
-        return children;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitElseClause(this);
     }
 
     @Override
-    public ASTNode addChild(ASTNode child) {
-        body.add(child);
+    public int getChildCount() {
+        return body.size();
+    }
 
-        return this;
+    @Override
+    public ASTNode getChild(int index) {
+        return body.get(index);
     }
 
     @Override
-    public ASTNode removeChild(ASTNode child) {
-        this.body.remove(child);
-        return this;
+    public void setChild(int index, ASTNode child) {
+        body.set(index, child);
+        contentChanged();
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ElseClause ElseClause = (ElseClause) o;
-        return Objects.equals(body, ElseClause.body);
+    public ElseClause copy() {
+        ElseClause copy = (ElseClause) super.copy();
+        copy.body = new ArrayList<>(body);
+        return copy;
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(body);
+    public ASTNode addChild(ASTNode child) {
+        body.add(child);
+        contentChanged();
+
+        return this;
     }
 
+    @Override
+    public ASTNode removeChild(ASTNode child) {
+        removeSameChild(body, child);
+        contentChanged();
+        return this;
+    }
 
 }
@@ -1,5 +1,8 @@
 package nl.han.ica.icss.ast;
 
 public abstract class Expression extends ASTNode {
-
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitExpression(this);
+    }
 }
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class IfClause extends ASTNode {
 
@@ -32,19 +31,56 @@ public class IfClause extends ASTNode {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.add(conditionalExpression);
-        children.addAll(body);
-        if (elseClause != null)
-            children.add(elseClause);
-
-        return children;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitIfClause(this);
+    }
+
+    @Override
+    public int getChildCount() {
+        return (conditionalExpression != null ? 1 : 0) + body.size() + (elseClause != null ? 1 : 0);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        final int bodyIndex = conditionalExpression != null ? index - 1 : index;
+
+        if (index == 0 && conditionalExpression != null) {
+            return conditionalExpression;
+        } else if (bodyIndex >= 0 && bodyIndex < body.size()) {
+            return body.get(bodyIndex);
+        } else if (bodyIndex == body.size() && elseClause != null) {
+            return elseClause;
+        }
+        throw childIndexOutOfBounds(index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        final int bodyIndex = conditionalExpression != null ? index - 1 : index;
+
+        if (index == 0 && conditionalExpression != null) {
+            conditionalExpression = (Expression) child;
+        } else if (bodyIndex >= 0 && bodyIndex < body.size()) {
+            body.set(bodyIndex, child);
+        } else if (bodyIndex == body.size() && elseClause != null) {
+            elseClause = (ElseClause) child;
+        } else {
+            throw childIndexOutOfBounds(index);
+        }
+        contentChanged();
+    }
+
+    @Override
+    public IfClause copy() {
+        IfClause copy = (IfClause) super.copy();
+        copy.body = new ArrayList<>(body);
+        return copy;
     }
 
     @Override
     public ASTNode removeChild(ASTNode child) {
-        this.body.remove(child);
+        removeSameChild(body, child);
+        contentChanged();
 
         return this;
     }
@@ -57,31 +93,11 @@ public class IfClause extends ASTNode {
             elseClause = (ElseClause) child;
         else
             body.add(child);
+        contentChanged();
 
         return this;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        IfClause ifClause = (IfClause) o;
-        if (this.elseClause == null)
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                    Objects.equals(body, ifClause.body);
-        else
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                    Objects.equals(body, ifClause.body) &&
-                    Objects.equals(elseClause, ifClause.elseClause);
-
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(conditionalExpression, body, elseClause);
-    }
-
     public Expression getConditionalExpression() {
         return conditionalExpression;
     }
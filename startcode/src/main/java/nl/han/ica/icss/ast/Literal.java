@@ -1,8 +1,16 @@
 package nl.han.ica.icss.ast;
 
+/*
+ * Literals do not change after construction, the valueOf methods of the literal classes share them between all ASTs.
+ */
 public abstract class Literal extends Expression {
 
     public abstract boolean evaluate(Literal other, ComparisonOperator operator);
 
     public abstract int getNumericValue();
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitLiteral(this);
+    }
 }
@@ -1,20 +1,34 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.ast.types.ExpressionType;
+
 import java.util.ArrayList;
 
 public abstract class Operation extends Expression {
 
     public Expression lhs;
     public Expression rhs;
+    //Type of the result the Checker inferred, UNDEFINED for an illegal operation, with the id of the check it is valid in
+    public InferredType inferred;
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if (lhs != null)
-            children.add(lhs);
-        if (rhs != null)
-            children.add(rhs);
-        return children;
+    public int getChildCount() {
+        return optionalChildCount(lhs, rhs);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return optionalChild(lhs, rhs, index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        if (isFirstOptionalChild(lhs, rhs, index)) {
+            lhs = (Expression) child;
+        } else {
+            rhs = (Expression) child;
+        }
+        contentChanged();
     }
 
     @Override
@@ -24,8 +38,30 @@ public abstract class Operation extends Expression {
         } else if (rhs == null) {
             rhs = (Expression) child;
         }
+        contentChanged();
         return this;
     }
 
     public abstract int evaluate();
+
+    public abstract ArithmeticOperator getOperator();
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitOperation(this);
+    }
+
+    /**
+     * A type with the check it was inferred in. The pair is immutable and replaced as a whole, so a thread that reads
+     * the operation during a concurrent check never sees the type of one check with the id of another.
+     */
+    public static final class InferredType {
+        public final ExpressionType type;
+        public final int checkId;
+
+        public InferredType(ExpressionType type, int checkId) {
+            this.type = type;
+            this.checkId = checkId;
+        }
+    }
 }
@@ -3,6 +3,8 @@ package nl.han.ica.icss.ast;
 public class PropertyName extends ASTNode {
 
     public String name;
+    //Id of the name in the symbol table of the AST, or SymbolTable.NO_SYMBOL
+    public int symbolId = SymbolTable.NO_SYMBOL;
 
     public PropertyName() {
         super();
@@ -14,8 +16,19 @@ public class PropertyName extends ASTNode {
         this.name = name;
     }
 
+    public PropertyName(String name, int symbolId) {
+        super();
+        this.name = name;
+        this.symbolId = symbolId;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Property: (" + name + ")";
     }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPropertyName(this);
+    }
 }
@@ -0,0 +1,40 @@
+package nl.han.ica.icss.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work for the style rules of a stylesheet concurrently in a {@link ForkJoinPool}.
+ * The passes that work per style rule use this after they handled the stylesheet level on their own thread.
+ * <p>
+ * The tasks are forked with {@link ForkJoinTask#invokeAll}, so they run in the pool of the calling thread when that is
+ * a worker of a pool, like a file compiled by the batch compiler, and in the common pool otherwise.
+ */
+public final class RuleTasks {
+
+    //The rules are split over this many tasks per thread of the pool, so threads that finish early can steal work
+    private static final int TASKS_PER_THREAD = 4;
+
+    private RuleTasks() {
+    }
+
+    /**
+     * Processes every item and returns when all are done. A task processes a run of consecutive items in their order,
+     * with a worker of its own from the supplier, so a worker is only used by one thread.
+     */
+    public static <T> void run(List<T> items, Supplier<Consumer<T>> workers) {
+        final ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        final int taskCount = Math.min(items.size(), pool.getParallelism() * TASKS_PER_THREAD);
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(taskCount);
+
+        for (int task = 0; task < taskCount; task++) {
+            final List<T> taskItems = items.subList(items.size() * task / taskCount, items.size() * (task + 1) / taskCount);
+            tasks.add(ForkJoinTask.adapt(() -> taskItems.forEach(workers.get())));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+}
@@ -1,4 +1,8 @@
 package nl.han.ica.icss.ast;
 
 public abstract class Selector extends ASTNode {
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitSelector(this);
+    }
 }
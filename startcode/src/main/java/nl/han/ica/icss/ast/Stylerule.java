@@ -1,12 +1,15 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.checker.RuleCheckCache;
+
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class Stylerule extends ASTNode {
 
     public ArrayList<Selector> selectors = new ArrayList<>();
     public ArrayList<ASTNode> body = new ArrayList<>();
+    //The errors of this rule in the last check with a RuleCheckCache, which finds them here without comparing the rule
+    public RuleCheckCache.Entry checkCacheEntry;
 
     public Stylerule() {
     }
@@ -23,17 +26,42 @@ public class Stylerule extends ASTNode {
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.addAll(selectors);
-        children.addAll(body);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitStylerule(this);
+    }
+
+    @Override
+    public int getChildCount() {
+        return selectors.size() + body.size();
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        return index < selectors.size() ? selectors.get(index) : body.get(index - selectors.size());
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        if (index < selectors.size()) {
+            selectors.set(index, (Selector) child);
+        } else {
+            body.set(index - selectors.size(), child);
+        }
+        contentChanged();
+    }
 
-        return children;
+    @Override
+    public Stylerule copy() {
+        Stylerule copy = (Stylerule) super.copy();
+        copy.selectors = new ArrayList<>(selectors);
+        copy.body = new ArrayList<>(body);
+        return copy;
     }
 
     @Override
     public ASTNode removeChild(ASTNode child) {
-        this.body.remove(child);
+        removeSameChild(body, child);
+        contentChanged();
         return this;
     }
 
@@ -43,22 +71,8 @@ public class Stylerule extends ASTNode {
             selectors.add((Selector) child);
         else
             body.add(child);
+        contentChanged();
 
         return this;
     }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        Stylerule stylerule = (Stylerule) o;
-        return Objects.equals(selectors, stylerule.selectors) &&
-                Objects.equals(body, stylerule.body);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(selectors, body);
-    }
 }
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 /**
  * A stylesheet is the root node of the AST, it consists of one or more statements
@@ -24,35 +23,50 @@ public class Stylesheet extends ASTNode {
         return "Stylesheet";
     }
 
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitStylesheet(this);
+    }
+
     @Override
     public ArrayList<ASTNode> getChildren() {
         return this.body;
     }
 
     @Override
-    public ASTNode addChild(ASTNode child) {
-        body.add(child);
-        return this;
+    public int getChildCount() {
+        return body.size();
     }
 
     @Override
-    public ASTNode removeChild(ASTNode child) {
-        body.remove(child);
-        return this;
+    public ASTNode getChild(int index) {
+        return body.get(index);
+    }
+
+    @Override
+    public void setChild(int index, ASTNode child) {
+        body.set(index, child);
+        contentChanged();
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        Stylesheet that = (Stylesheet) o;
-        return Objects.equals(body, that.body);
+    public Stylesheet copy() {
+        Stylesheet copy = (Stylesheet) super.copy();
+        copy.body = new ArrayList<>(body);
+        return copy;
     }
 
     @Override
-    public int hashCode() {
+    public ASTNode addChild(ASTNode child) {
+        body.add(child);
+        contentChanged();
+        return this;
+    }
 
-        return Objects.hash(body);
+    @Override
+    public ASTNode removeChild(ASTNode child) {
+        removeSameChild(body, child);
+        contentChanged();
+        return this;
     }
 }
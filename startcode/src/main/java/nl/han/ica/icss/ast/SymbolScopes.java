@@ -0,0 +1,68 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+
+/**
+ * Nested scopes that bind symbol ids (see {@link SymbolTable}) to values.
+ * Instead of a map per scope it keeps the visible value of every symbol in one array, indexed by id,
+ * and an undo log of the values a binding replaced. Leaving a scope restores those, so a lookup is a single array access.
+ */
+public class SymbolScopes<T> {
+
+    private Object[] values = new Object[16];
+    private int[] undoSymbols = new int[16];
+    private Object[] undoValues = new Object[16];
+    private int undoSize = 0;
+    private int[] scopeStarts = new int[8];
+    private int depth = 0;
+
+    public void enterScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = undoSize;
+    }
+
+    /**
+     * Removes all bindings made since the matching {@link #enterScope()}.
+     */
+    public void exitScope() {
+        final int scopeStart = scopeStarts[--depth];
+
+        while (undoSize > scopeStart) {
+            undoSize--;
+            values[undoSymbols[undoSize]] = undoValues[undoSize];
+            undoValues[undoSize] = null;
+        }
+    }
+
+    /**
+     * Binds the value in the innermost scope, it hides the bindings of the outer scopes until that scope is left.
+     */
+    public void put(int symbol, T value) {
+        if (symbol >= values.length) {
+            values = Arrays.copyOf(values, Math.max(symbol + 1, values.length * 2));
+        }
+        if (undoSize == undoSymbols.length) {
+            undoSymbols = Arrays.copyOf(undoSymbols, undoSize * 2);
+            undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+        }
+
+        undoSymbols[undoSize] = symbol;
+        undoValues[undoSize] = values[symbol];
+        undoSize++;
+        values[symbol] = value;
+    }
+
+    /**
+     * The value of the innermost binding of the symbol, null when it is not bound.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int symbol) {
+        if (symbol < 0 || symbol >= values.length) {
+            return null;
+        }
+
+        return (T) values[symbol];
+    }
+}
@@ -0,0 +1,65 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Interns the names of properties, selectors and variables: every distinct name is stored once and gets a dense int id,
+ * counting from 0. An id only has a meaning within the table that handed it out.
+ * <p>
+ * Normally every compilation has its own table, {@link #global()} is one table for the whole JVM of which the names
+ * are never released. The methods are synchronized, so a table can be shared between threads.
+ */
+public class SymbolTable {
+
+    /**
+     * The symbol id of a node that was not created from an interned name.
+     */
+    public static final int NO_SYMBOL = -1;
+
+    private static final SymbolTable GLOBAL = new SymbolTable();
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int size = 0;
+
+    public static SymbolTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the id of the name, a name that was not seen before gets the next free id.
+     */
+    public synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+
+        return size++;
+    }
+
+    /**
+     * The shared instance of the name with the given id.
+     */
+    public synchronized String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException(String.format("Unknown symbol id: %d", id));
+        }
+
+        return names[id];
+    }
+
+    /**
+     * The number of names, all ids are smaller than this.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 /**
  * An assignment binds a expression to an identifier.
@@ -10,12 +9,20 @@ public class VariableAssignment extends ASTNode {
 
     public VariableReference name;
     public Expression expression;
+    //Address of the variable the assignment hides in an outer scope, set by the VariableBinder
+    public int hiddenDepth = VariableBinder.UNBOUND;
+    public int hiddenSlot = 0;
 
     @Override
     public String getNodeLabel() {
         return "VariableAssignment (" + name.name + ")";
     }
 
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitVariableAssignment(this);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
         if (name == null) {
@@ -23,33 +30,28 @@ public class VariableAssignment extends ASTNode {
         } else {
             expression = (Expression) child;
         }
+        contentChanged();
 
         return this;
     }
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if (name != null)
-            children.add(name);
-        if (expression != null)
-            children.add(expression);
-        return children;
+    public int getChildCount() {
+        return optionalChildCount(name, expression);
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        VariableAssignment that = (VariableAssignment) o;
-        return Objects.equals(name, that.name) &&
-                Objects.equals(expression, that.expression);
+    public ASTNode getChild(int index) {
+        return optionalChild(name, expression, index);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(name, expression);
+    public void setChild(int index, ASTNode child) {
+        if (isFirstOptionalChild(name, expression, index)) {
+            name = (VariableReference) child;
+        } else {
+            expression = (Expression) child;
+        }
+        contentChanged();
     }
 }
@@ -0,0 +1,194 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the variable references of a stylesheet to a (depth, slot) address: the number of frames up from the innermost
+ * frame and the index in that frame. Only a scope that assigns variables gets a frame, from its first assignment on,
+ * so the addresses skip scopes without variables. The passes keep their values in {@link VariableFrames} and read them
+ * by address, without looking up names.
+ * <p>
+ * A pass binds while it walks the tree, there is no pass of its own: it calls {@link #start(SymbolTable)}, enters and exits
+ * the scopes, wraps every assignment in {@link #enterAssignment} and {@link #exitAssignment()}, and binds every reference
+ * just before it reads its variable. A reference that is read twice is bound twice, to the same address.
+ * A scope can also be bound by another binder, on another thread: {@link #start(Snapshot)} continues from a
+ * {@link #snapshot()} of this binder, which must not bind anything more while the other binder reads its names.
+ * <p>
+ * A reference is bound to the assignment that is visible where it is evaluated, like the passes did with nested scopes:
+ * an assignment in a scope hides the outer variable from that assignment on. A reference in the expression of an assignment
+ * to its own name is bound to the slot of the assignment, which holds the hidden value until the new value is assigned.
+ */
+public class VariableBinder {
+
+    /**
+     * The depth of a reference to a variable that is not assigned where it is used, and of an assignment that hides nothing.
+     */
+    public static final int UNBOUND = -1;
+
+    private SymbolTable symbols;
+    //The frame and slot of the assignment every name is bound to, and the number of bindings made before it
+    private SymbolScopes<int[]> bindings;
+    private int bindingCount = 0;
+    //The binder this one continues from, and how many of its bindings are visible
+    private VariableBinder outer;
+    private int outerBindingCount;
+    //Number of frames when every open scope was entered, and the number of slots of every frame
+    private int[] scopeFrameCounts = new int[8];
+    private int scopeDepth = 0;
+    private int[] slotCounts = new int[8];
+    private int frameCount = 0;
+    //While the expression of an assignment is read, a reference to its own name gets its slot
+    private int assignedSymbol = SymbolTable.NO_SYMBOL;
+    private int assignedSlot;
+
+    /**
+     * Starts binding a new stylesheet of which the names are interned in the symbol table.
+     */
+    public void start(SymbolTable symbols) {
+        this.symbols = symbols;
+        bindings = new SymbolScopes<>();
+        bindingCount = 0;
+        outer = null;
+        scopeDepth = 0;
+        frameCount = 0;
+    }
+
+    /**
+     * The point this binder is at, to bind a scope nested in the current scope with another binder.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this, bindingCount, frameCount);
+    }
+
+    /**
+     * Starts binding a scope nested in the scope the snapshot was taken in: the names bound up to the snapshot are visible.
+     * A binder can be started again after it exited all its scopes, it reuses its tables.
+     */
+    public void start(Snapshot snapshot) {
+        symbols = snapshot.binder.symbols;
+        if (bindings == null || scopeDepth != 0) {
+            bindings = new SymbolScopes<>();
+        }
+        bindingCount = 0;
+        outer = snapshot.binder;
+        outerBindingCount = snapshot.bindingCount;
+        scopeDepth = 0;
+        frameCount = snapshot.frameCount;
+    }
+
+    public static class Snapshot {
+        private final VariableBinder binder;
+        private final int bindingCount;
+        private final int frameCount;
+
+        private Snapshot(VariableBinder binder, int bindingCount, int frameCount) {
+            this.binder = binder;
+            this.bindingCount = bindingCount;
+            this.frameCount = frameCount;
+        }
+    }
+
+    public void enterScope() {
+        if (scopeDepth == scopeFrameCounts.length) {
+            scopeFrameCounts = Arrays.copyOf(scopeFrameCounts, scopeDepth * 2);
+        }
+        scopeFrameCounts[scopeDepth++] = frameCount;
+        bindings.enterScope();
+    }
+
+    public void exitScope() {
+        bindings.exitScope();
+        frameCount = scopeFrameCounts[--scopeDepth];
+    }
+
+    /**
+     * Binds the name of the assignment to its slot. Until {@link #exitAssignment()}, while the pass reads the expression,
+     * references to that name are bound to the slot as well.
+     */
+    public void enterAssignment(VariableAssignment assignment) {
+        if (assignment.name == null) {
+            return;
+        }
+
+        //The frame of the scope exists from its first assignment on, the passes create it at the same point
+        if (frameCount == scopeFrameCounts[scopeDepth - 1]) {
+            if (frameCount == slotCounts.length) {
+                slotCounts = Arrays.copyOf(slotCounts, frameCount * 2);
+            }
+            slotCounts[frameCount++] = 0;
+        }
+        final int frame = frameCount - 1;
+        final int symbol = symbolOf(assignment.name);
+        final int[] hidden = lookup(symbol);
+        final boolean isAssignedInThisScope = hidden != null && hidden[0] == frame;
+        final int slot = isAssignedInThisScope ? hidden[1] : slotCounts[frame]++;
+
+        assignment.name.bindingDepth = 0;
+        assignment.name.bindingSlot = slot;
+        assignment.hiddenDepth = hidden != null && !isAssignedInThisScope ? frame - hidden[0] : UNBOUND;
+        assignment.hiddenSlot = hidden != null && !isAssignedInThisScope ? hidden[1] : 0;
+
+        if (!isAssignedInThisScope) {
+            bindings.put(symbol, new int[]{frame, slot, bindingCount++});
+        }
+        assignedSymbol = symbol;
+        assignedSlot = slot;
+    }
+
+    public void exitAssignment() {
+        assignedSymbol = SymbolTable.NO_SYMBOL;
+    }
+
+    /**
+     * Binds the reference to the assignment of its name that is visible here.
+     */
+    public void bindReference(VariableReference reference) {
+        final int symbol = symbolOf(reference);
+        final int[] binding = lookup(symbol);
+
+        if (symbol == assignedSymbol) {
+            reference.bindingDepth = 0;
+            reference.bindingSlot = assignedSlot;
+        } else if (binding != null) {
+            reference.bindingDepth = frameCount - 1 - binding[0];
+            reference.bindingSlot = binding[1];
+        } else {
+            reference.bindingDepth = UNBOUND;
+            reference.bindingSlot = 0;
+        }
+    }
+
+    /**
+     * The number of frames up from the current scope to the assignment the name is bound to, {@link #UNBOUND} when it is not bound.
+     */
+    public int depthOf(int symbol) {
+        final int[] binding = lookup(symbol);
+        return binding != null ? frameCount - 1 - binding[0] : UNBOUND;
+    }
+
+    /**
+     * The slot of the assignment the name is bound to, 0 when it is not bound.
+     */
+    public int slotOf(int symbol) {
+        final int[] binding = lookup(symbol);
+        return binding != null ? binding[1] : 0;
+    }
+
+    private int[] lookup(int symbol) {
+        final int[] binding = bindings.get(symbol);
+        if (binding != null || outer == null) {
+            return binding;
+        }
+
+        //The outer binder went on after the snapshot, only its earlier bindings are visible
+        final int[] outerBinding = outer.bindings.get(symbol);
+        return outerBinding != null && outerBinding[2] < outerBindingCount ? outerBinding : null;
+    }
+
+    /*
+     Nodes that were not created by the parser have no symbol id, their name is interned on first use.
+     */
+    private int symbolOf(VariableReference variable) {
+        return variable.symbolId != SymbolTable.NO_SYMBOL ? variable.symbolId : symbols.intern(variable.name);
+    }
+}
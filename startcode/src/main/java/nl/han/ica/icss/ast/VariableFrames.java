@@ -0,0 +1,109 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+
+/**
+ * The values of the variables while a pass walks the tree, at the addresses of {@link VariableBinder}.
+ * A scope only gets a frame, an array with a value per slot, when it assigns a variable.
+ * Scopes are entered and left, and assignments made, in the order the binder walked the tree.
+ * <p>
+ * {@link #fork()} gives a scope nested in the current one frames of its own, so it can be walked by another thread.
+ */
+public class VariableFrames<T> {
+
+    private Object[][] frames = new Object[8][];
+    private int frameCount = 0;
+    private int[] scopeFrameCounts = new int[8];
+    private int scopeDepth = 0;
+    //Frames below this index are shared with forks, they are copied before a value is assigned in them
+    private int sharedFrameCount = 0;
+
+    public void enterScope() {
+        if (scopeDepth == scopeFrameCounts.length) {
+            scopeFrameCounts = Arrays.copyOf(scopeFrameCounts, scopeDepth * 2);
+        }
+        scopeFrameCounts[scopeDepth++] = frameCount;
+    }
+
+    /**
+     * Frames for walking a scope nested in the current one separately: they see the values assigned so far,
+     * but neither the fork nor these frames see what the other assigns from now on.
+     */
+    public VariableFrames<T> fork() {
+        VariableFrames<T> fork = new VariableFrames<>();
+        fork.frames = Arrays.copyOf(frames, Math.max(frameCount * 2, 8));
+        fork.frameCount = frameCount;
+        fork.sharedFrameCount = frameCount;
+        sharedFrameCount = frameCount;
+        return fork;
+    }
+
+    /**
+     * Drops the frame of the innermost scope, with the values assigned in it.
+     */
+    public void exitScope() {
+        final int scopeStart = scopeFrameCounts[--scopeDepth];
+        while (frameCount > scopeStart) {
+            frames[--frameCount] = null;
+        }
+        sharedFrameCount = Math.min(sharedFrameCount, frameCount);
+    }
+
+    /**
+     * Prepares the slot of an assignment, a pass calls this before it evaluates the expression. The innermost scope
+     * gets a frame if it does not have one yet, and the slot gets the value the assignment hides when it has no value yet,
+     * so the expression and an assignment that does not bind a new value see the variable as it was.
+     */
+    public void enterAssignment(VariableAssignment assignment) {
+        if (frameCount == scopeFrameCounts[scopeDepth - 1]) {
+            if (frameCount == frames.length) {
+                frames = Arrays.copyOf(frames, frameCount * 2);
+            }
+            frames[frameCount++] = new Object[4];
+        }
+        if (get(0, assignment.name.bindingSlot) == null) {
+            final T hidden = get(assignment.hiddenDepth, assignment.hiddenSlot);
+            if (hidden != null) {
+                assign(assignment, hidden);
+            }
+        }
+    }
+
+    /**
+     * The value at the address, null when nothing was assigned there or the address is {@link VariableBinder#UNBOUND}.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int depth, int slot) {
+        if (depth == VariableBinder.UNBOUND) {
+            return null;
+        }
+
+        final Object[] frame = frames[frameCount - 1 - depth];
+        return slot < frame.length ? (T) frame[slot] : null;
+    }
+
+    public T get(VariableReference reference) {
+        return get(reference.bindingDepth, reference.bindingSlot);
+    }
+
+    /**
+     * The value of the name of an assignment after {@link #enterAssignment}: the value it had just before the assignment.
+     */
+    public T getAssigned(VariableAssignment assignment) {
+        return get(0, assignment.name.bindingSlot);
+    }
+
+    /**
+     * Assigns the value to the name of the assignment in the innermost frame.
+     */
+    public void assign(VariableAssignment assignment, T value) {
+        final int slot = assignment.name.bindingSlot;
+        Object[] frame = frames[frameCount - 1];
+        if (slot >= frame.length || frameCount <= sharedFrameCount) {
+            frame = Arrays.copyOf(frame, slot < frame.length ? frame.length : Math.max(slot + 1, frame.length * 2));
+            frames[frameCount - 1] = frame;
+            sharedFrameCount = Math.min(sharedFrameCount, frameCount - 1);
+        }
+        frame[slot] = value;
+    }
+}
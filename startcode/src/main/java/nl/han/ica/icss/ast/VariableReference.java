@@ -1,32 +1,32 @@
 package nl.han.ica.icss.ast;
 
-import java.util.Objects;
 
 public class VariableReference extends Expression {
     public String name;
+    //Id of the name in the symbol table of the AST, or SymbolTable.NO_SYMBOL
+    public int symbolId = SymbolTable.NO_SYMBOL;
+    //Address of the assignment the reference reads, set by the VariableBinder
+    public int bindingDepth = VariableBinder.UNBOUND;
+    public int bindingSlot = 0;
 
     public VariableReference(String name) {
         super();
         this.name = name;
     }
 
-    @Override
-    public String getNodeLabel() {
-        return "VariableReference (" + name + ")";
+    public VariableReference(String name, int symbolId) {
+        super();
+        this.name = name;
+        this.symbolId = symbolId;
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        VariableReference that = (VariableReference) o;
-        return Objects.equals(name, that.name);
+    public String getNodeLabel() {
+        return "VariableReference (" + name + ")";
     }
 
     @Override
-    public int hashCode() {
-
-        return Objects.hash(name);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitVariableReference(this);
     }
 }
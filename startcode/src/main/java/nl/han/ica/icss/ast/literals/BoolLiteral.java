@@ -1,12 +1,14 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.ComparisonOperator;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class BoolLiteral extends Literal {
-    public boolean value;
+    public static final BoolLiteral TRUE = new BoolLiteral(true);
+    public static final BoolLiteral FALSE = new BoolLiteral(false);
+
+    public final boolean value;
 
     public BoolLiteral(boolean value) {
         this.value = value;
@@ -16,6 +18,14 @@ public class BoolLiteral extends Literal {
         this.value = text.equals("TRUE");
     }
 
+    public static BoolLiteral valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    public static BoolLiteral valueOf(String text) {
+        return valueOf(text.equals("TRUE"));
+    }
+
     @Override
     public String getNodeLabel() {
         String textValue = value ? "TRUE" : "FALSE";
@@ -23,12 +33,8 @@ public class BoolLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        BoolLiteral that = (BoolLiteral) o;
-        return value == that.value;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBoolLiteral(this);
     }
 
     @Override
@@ -36,11 +42,6 @@ public class BoolLiteral extends Literal {
         return "" + value;
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(value);
-    }
-
     @Override
     public boolean evaluate(Literal other, ComparisonOperator operator) {
         if (!(other instanceof BoolLiteral))
@@ -1,29 +1,47 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.ComparisonOperator;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ColorLiteral extends Literal {
-    public String value;
+    //Bounded, so a long running process that sees many different colors keeps a fixed amount of them
+    private static final int MAX_INTERNED = 4096;
+    private static final ConcurrentHashMap<String, ColorLiteral> INTERNED = new ConcurrentHashMap<>();
+
+    public final String value;
 
     public ColorLiteral(String value) {
         this.value = value;
     }
 
+    /**
+     * The shared literal of a color, or a new one once the maximum number of shared colors is reached.
+     */
+    public static ColorLiteral valueOf(String value) {
+        ColorLiteral literal = INTERNED.get(value);
+        if (literal == null) {
+            literal = new ColorLiteral(value);
+            if (INTERNED.size() < MAX_INTERNED) {
+                final ColorLiteral existing = INTERNED.putIfAbsent(value, literal);
+                if (existing != null) {
+                    literal = existing;
+                }
+            }
+        }
+        return literal;
+    }
+
     @Override
     public String getNodeLabel() {
         return "Color literal (" + value + ")";
     }
 
-
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitColorLiteral(this);
     }
 
     @Override
@@ -31,12 +49,6 @@ public class ColorLiteral extends Literal {
         return "" + value;
     }
 
-    @Override
-    public int hashCode() {
-
-        return Objects.hash(value);
-    }
-
     @Override
     public boolean evaluate(Literal other, ComparisonOperator operator) {
         if (!(other instanceof ColorLiteral))
@@ -0,0 +1,37 @@
+package nl.han.ica.icss.ast.literals;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/*
+ Shares one literal per value for the common values from -128 to 1023, other values get a new literal.
+ The literals are created on first use, when two threads race for a value both get the one stored first.
+ */
+final class NumericLiteralCache<T> {
+
+    private static final int LOW = -128;
+    private static final int HIGH = 1023;
+
+    private final AtomicReferenceArray<T> literals = new AtomicReferenceArray<>(HIGH - LOW + 1);
+    private final IntFunction<T> constructor;
+
+    NumericLiteralCache(IntFunction<T> constructor) {
+        this.constructor = constructor;
+    }
+
+    T get(int value) {
+        if (value < LOW || value > HIGH) {
+            return constructor.apply(value);
+        }
+
+        final int index = value - LOW;
+        T literal = literals.get(index);
+        if (literal == null) {
+            literal = constructor.apply(value);
+            if (!literals.compareAndSet(index, null, literal)) {
+                literal = literals.get(index);
+            }
+        }
+        return literal;
+    }
+}
@@ -1,19 +1,35 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.ComparisonOperator;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class PercentageLiteral extends Literal {
-    public int value;
+    private static final NumericLiteralCache<PercentageLiteral> CACHE = new NumericLiteralCache<>(PercentageLiteral::new);
+
+    public final int value;
 
     public PercentageLiteral(int value) {
         this.value = value;
     }
 
     public PercentageLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 1));
+        this.value = parse(text);
+    }
+
+    /**
+     * The shared literal of a common value, or a new one.
+     */
+    public static PercentageLiteral valueOf(int value) {
+        return CACHE.get(value);
+    }
+
+    public static PercentageLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 1));
     }
 
     @Override
@@ -22,12 +38,8 @@ public class PercentageLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        PercentageLiteral that = (PercentageLiteral) o;
-        return value == that.value;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPercentageLiteral(this);
     }
 
     @Override
@@ -35,11 +47,6 @@ public class PercentageLiteral extends Literal {
         return "" + value + "%";
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(value);
-    }
-
     @Override
     public boolean evaluate(Literal other, ComparisonOperator operator) {
         if (!(other instanceof PercentageLiteral))
@@ -1,19 +1,35 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.ComparisonOperator;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class PixelLiteral extends Literal {
-    public int value;
+    private static final NumericLiteralCache<PixelLiteral> CACHE = new NumericLiteralCache<>(PixelLiteral::new);
+
+    public final int value;
 
     public PixelLiteral(int value) {
         this.value = value;
     }
 
     public PixelLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 2));
+        this.value = parse(text);
+    }
+
+    /**
+     * The shared literal of a common value, or a new one.
+     */
+    public static PixelLiteral valueOf(int value) {
+        return CACHE.get(value);
+    }
+
+    public static PixelLiteral valueOf(String text) {
+        return valueOf(parse(text));
+    }
+
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 2));
     }
 
     @Override
@@ -22,12 +38,8 @@ public class PixelLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        PixelLiteral that = (PixelLiteral) o;
-        return value == that.value;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPixelLiteral(this);
     }
 
     @Override
@@ -35,11 +47,6 @@ public class PixelLiteral extends Literal {
         return "" + value + "px";
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(value);
-    }
-
     @Override
     public boolean evaluate(Literal other, ComparisonOperator operator) {
         if (!(other instanceof PixelLiteral))
@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast.operations;
 
+import nl.han.ica.icss.ast.ASTVisitor;
+import nl.han.ica.icss.ast.ArithmeticOperator;
 import nl.han.ica.icss.ast.Literal;
 import nl.han.ica.icss.ast.Operation;
 
@@ -10,6 +12,16 @@ public class AddOperation extends Operation {
         return "Add";
     }
 
+    @Override
+    public ArithmeticOperator getOperator() {
+        return ArithmeticOperator.ADD;
+    }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitAddOperation(this);
+    }
+
     @Override
     public int evaluate() {
         return ((Literal) lhs).getNumericValue() + ((Literal) rhs).getNumericValue();
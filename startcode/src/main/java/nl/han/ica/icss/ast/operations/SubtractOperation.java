@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast.operations;
 
+import nl.han.ica.icss.ast.ASTVisitor;
+import nl.han.ica.icss.ast.ArithmeticOperator;
 import nl.han.ica.icss.ast.Literal;
 import nl.han.ica.icss.ast.Operation;
 
@@ -10,6 +12,16 @@ public class SubtractOperation extends Operation {
         return "Subtract";
     }
 
+    @Override
+    public ArithmeticOperator getOperator() {
+        return ArithmeticOperator.SUBTRACT;
+    }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitSubtractOperation(this);
+    }
+
     @Override
     public int evaluate() {
         return ((Literal) lhs).getNumericValue() - ((Literal) rhs).getNumericValue();
@@ -1,8 +1,8 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
-import java.util.Objects;
 
 public class ClassSelector extends Selector {
     public String cls;
@@ -16,20 +16,12 @@ public class ClassSelector extends Selector {
         return "ClassSelector " + cls;
     }
 
-    public String toString() {
-        return cls;
-    }
-
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ClassSelector that = (ClassSelector) o;
-        return Objects.equals(cls, that.cls);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitClassSelector(this);
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(cls);
+    public String toString() {
+        return cls;
     }
 }
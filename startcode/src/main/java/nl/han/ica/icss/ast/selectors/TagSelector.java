@@ -1,8 +1,8 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
-import java.util.Objects;
 
 public class TagSelector extends Selector {
     public String tag;
@@ -20,17 +20,7 @@ public class TagSelector extends Selector {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        TagSelector that = (TagSelector) o;
-        return Objects.equals(tag, that.tag);
-    }
-
-    @Override
-    public int hashCode() {
-
-        return Objects.hash(tag);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitTagSelector(this);
     }
 }
@@ -2,99 +2,348 @@ package nl.han.ica.icss.checker;
 
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
-import nl.han.ica.icss.ast.operations.AddOperation;
-import nl.han.ica.icss.ast.operations.MultiplyOperation;
-import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class Checker {
-    private LinkedList<HashMap<String, ExpressionType>> variableTypes;
-    private LinkedList<ExpressionType> expressionTypes;
+    private VariableFrames<ExpressionType> variableTypes;
+    //Every check has an id, the types it inferred for operations are stored on the nodes with that id
+    private static final AtomicInteger checkCount = new AtomicInteger();
+    private int checkId;
+    //The inferred types of this check by ordinal, shared by the operations and the tasks of the check
+    private Operation.InferredType[] inferredTypes;
+    private SymbolTable symbols;
+    private PropertySchema propertySchema = PropertySchema.getDefault();
+    private final NodeChecker nodeChecker = new NodeChecker();
+    private final ExpressionTypeOf expressionTypeOf = new ExpressionTypeOf();
+    private final OperandTypeOf operandTypeOf = new OperandTypeOf();
+    private static final LiteralOperandTypeOf LITERAL_OPERAND_TYPE_OF = new LiteralOperandTypeOf();
+    private final VariableBinder variableBinder = new VariableBinder();
+    private ErrorCollector errors;
+    private int maxErrors = ErrorCollector.UNLIMITED;
+    private boolean parallel = false;
+    private RuleCheckCache ruleCache;
+
+    public Checker() {
+    }
+
+    /*
+     A checker for tasks of a parallel check, with the settings of the check it is part of.
+     */
+    private Checker(Checker check) {
+        symbols = check.symbols;
+        propertySchema = check.propertySchema;
+        maxErrors = check.maxErrors;
+        checkId = check.checkId;
+        inferredTypes = check.inferredTypes;
+        ruleCache = check.ruleCache;
+    }
+
+    /**
+     * Stops checking after this many errors, {@link ErrorCollector#UNLIMITED} (the default) reports all of them.
+     */
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * The properties a declaration may set and the types of their values, by default the properties of ICSS.
+     */
+    public void setPropertySchema(PropertySchema propertySchema) {
+        this.propertySchema = propertySchema;
+    }
+
+    /**
+     * When enabled, the style rules are checked concurrently by {@link RuleTasks}, in the pool of the calling thread or
+     * the common {@link ForkJoinPool}, after the variables of the stylesheet they see.
+     * The errors and their order are the same as those of a sequential check.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Keeps the errors of every style rule in the cache, and takes those of a rule that is equal to one of the last check
+     * with the cache from it, when the variables the rule names have the same types as then. The errors are the same as without it,
+     * but the variables of the rules taken from the cache are not bound, see {@link RuleCheckCache#getReusedRuleCount()}.
+     */
+    public void setRuleCheckCache(RuleCheckCache ruleCache) {
+        this.ruleCache = ruleCache;
+    }
 
-    public void check(AST ast) {
-        variableTypes = new LinkedList<>();
-        expressionTypes = new LinkedList<>();
-        checkStylesheet(ast.root);
+    /**
+     * Checks the AST and returns the errors it found. They are also set on their nodes.
+     */
+    public ErrorCollector check(AST ast) {
+        errors = new ErrorCollector(maxErrors);
+        variableTypes = new VariableFrames<>();
+        checkId = checkCount.incrementAndGet();
+        inferredTypes = new Operation.InferredType[ExpressionType.values().length];
+        for (ExpressionType type : ExpressionType.values()) {
+            inferredTypes[type.ordinal()] = new Operation.InferredType(type, checkId);
+        }
+        symbols = ast.symbols;
+        //The variables are bound as the check reads them, an unchanged AST keeps the addresses for the transforms
+        variableBinder.start(symbols);
+        if (ruleCache != null) {
+            ruleCache.startCheck(symbols, propertySchema, maxErrors);
+        }
+        if (parallel) {
+            checkStylesheetInParallel(ast.root);
+        } else {
+            checkStylesheet(ast.root);
+        }
+        if (ruleCache != null) {
+            ruleCache.finishCheck();
+        }
+        return errors;
     }
 
     private void checkStylesheet(Stylesheet stylesheet) {
-        checkChildren(stylesheet);
+        if (ruleCache == null) {
+            checkChildren(stylesheet);
+            return;
+        }
+
+        //With a cache every style rule collects its errors apart, like in a parallel check, to keep them for the next check
+        final ErrorCollector checkErrors = errors;
+        stylesheet.accept(nodeChecker);
+        final int childCount = stylesheet.getChildCount();
+        for (int i = 0; i < childCount && !checkErrors.isFull(); i++) {
+            final ASTNode child = stylesheet.getChild(i);
+
+            if (child instanceof Stylerule) {
+                final RuleCheck ruleCheck = new RuleCheck((Stylerule) child, ErrorCollector.forPart(maxErrors), variableTypes, null);
+                checkRule(ruleCheck);
+                errors = checkErrors;
+                errors.addAll(ruleCheck.errors);
+                ruleCache.store(ruleCheck.rule, ruleCheck.cacheEntry, ruleCheck.isCached);
+            } else {
+                checkChildren(child);
+            }
+        }
+        variableTypes.exitScope();
+        variableBinder.exitScope();
     }
 
-    private void checkChildren(ASTNode currentNode) {
-        List<ASTNode> children = currentNode.getChildren();
+    /*
+     The stylesheet level is checked on this thread and the style rules in tasks. A rule gets a fork of the variable frames
+     and a snapshot of the binder at its place in the stylesheet, so it sees the variables assigned before it.
+     Every child of the stylesheet collects its errors apart, they are added in the order of the children.
+     */
+    private void checkStylesheetInParallel(Stylesheet stylesheet) {
+        final ErrorCollector checkErrors = errors;
+        final int childCount = stylesheet.getChildCount();
+        final ErrorCollector[] childErrors = new ErrorCollector[childCount];
+        final List<RuleCheck> ruleChecks = new ArrayList<>();
+
+        stylesheet.accept(nodeChecker);
+        for (int i = 0; i < childCount; i++) {
+            final ASTNode child = stylesheet.getChild(i);
+            childErrors[i] = ErrorCollector.forPart(maxErrors);
+
+            if (child instanceof Stylerule) {
+                ruleChecks.add(new RuleCheck((Stylerule) child, childErrors[i], variableTypes.fork(), variableBinder.snapshot()));
+            } else {
+                errors = childErrors[i];
+                checkChildren(child);
+            }
+        }
+
+        RuleTasks.run(ruleChecks, () -> new Checker(this)::checkRuleInTask);
+
+        errors = checkErrors;
+        for (ErrorCollector errorsOfChild : childErrors) {
+            errors.addAll(errorsOfChild);
+        }
+        if (ruleCache != null) {
+            for (RuleCheck ruleCheck : ruleChecks) {
+                ruleCache.store(ruleCheck.rule, ruleCheck.cacheEntry, ruleCheck.isCached);
+            }
+        }
+        variableTypes.exitScope();
+        variableBinder.exitScope();
+    }
+
+    private void checkRuleInTask(RuleCheck ruleCheck) {
+        variableTypes = ruleCheck.variableTypes;
+        variableBinder.start(ruleCheck.binderSnapshot);
+        checkRule(ruleCheck);
+    }
 
-        final boolean scopeCreated = generateScope(currentNode);
+    /*
+     Checks a style rule with the variables of the stylesheet before it. With a cache, a rule that is found in it gets
+     the errors of the cache without walking it, so its variables are not bound.
+     */
+    private void checkRule(RuleCheck ruleCheck) {
+        errors = ruleCheck.errors;
+        if (ruleCache == null) {
+            checkChildren(ruleCheck.rule);
+            return;
+        }
+
+        final RuleCheckCache.Entry cached = ruleCache.lookup(ruleCheck.rule, this::typeOfVariable);
+        if (cached != null) {
+            ruleCache.addErrors(cached, ruleCheck.rule, errors);
+            ruleCheck.cacheEntry = cached;
+            ruleCheck.isCached = true;
+        } else {
+            checkChildren(ruleCheck.rule);
+            ruleCheck.cacheEntry = ruleCache.entryOf(ruleCheck.rule, errors, this::typeOfVariable);
+        }
+    }
+
+    /*
+     The type of the variable of the stylesheet the name refers to at the current style rule, null when there is none.
+     */
+    private ExpressionType typeOfVariable(int symbol) {
+        return variableTypes.get(variableBinder.depthOf(symbol), variableBinder.slotOf(symbol));
+    }
+
+    /*
+     A style rule of a parallel check or a check with a cache, with the state of the variables at its place in the stylesheet.
+     */
+    private static class RuleCheck {
+        final Stylerule rule;
+        final ErrorCollector errors;
+        final VariableFrames<ExpressionType> variableTypes;
+        final VariableBinder.Snapshot binderSnapshot;
+        //The errors of the rule for the cache, and whether they were taken from it
+        RuleCheckCache.Entry cacheEntry;
+        boolean isCached;
+
+        RuleCheck(Stylerule rule, ErrorCollector errors, VariableFrames<ExpressionType> variableTypes, VariableBinder.Snapshot binderSnapshot) {
+            this.rule = rule;
+            this.errors = errors;
+            this.variableTypes = variableTypes;
+            this.binderSnapshot = binderSnapshot;
+        }
+    }
 
-        registerVariables(currentNode);
-        checkScope(currentNode);
-        checkSemantic(currentNode);
+    private void checkChildren(ASTNode currentNode) {
+        final boolean scopeCreated = currentNode.accept(nodeChecker);
 
-        children.forEach(this::checkChildren);
+        final int childCount = currentNode.getChildCount();
+        for (int i = 0; i < childCount && !errors.isFull(); i++) {
+            checkChildren(currentNode.getChild(i));
+        }
 
         if (scopeCreated) {
-            variableTypes.removeFirst();
+            variableTypes.exitScope();
+            variableBinder.exitScope();
         }
     }
 
-    private boolean generateScope(ASTNode currentNode) {
-        if (currentNode instanceof Stylesheet
-                || currentNode instanceof Stylerule
-                || currentNode instanceof IfClause
-                || currentNode instanceof ElseClause) {
-            HashMap<String, ExpressionType> newScope = new HashMap<>();
-            variableTypes.addFirst(newScope);
+    /*
+     Checks a single node and returns whether it opened a scope, which is closed again after its children.
+     */
+    private class NodeChecker extends ASTVisitor<Boolean> {
+        @Override
+        public Boolean visitNode(ASTNode node) {
+            return false;
+        }
+
+        @Override
+        public Boolean visitStylesheet(Stylesheet stylesheet) {
+            enterScope();
             return true;
         }
-        return false;
-    }
-
-    private void registerVariables(ASTNode currentNode) {
-        if (currentNode instanceof VariableAssignment) {
-            HashMap<String, ExpressionType> currentScope = variableTypes.getFirst();
-            String variableName = ((VariableAssignment) currentNode).name.name;
-            ExpressionType existingVariableExpressionType = getVariableExpressionType(variableName);
-            ExpressionType variableExpressionType = determineExpressionType(((VariableAssignment) currentNode).expression);
-
-            final boolean variableDoesNotExistYet = existingVariableExpressionType == ExpressionType.UNDEFINED;
-            final boolean referencingUndefinedVariable = variableDoesNotExistYet && variableExpressionType == ExpressionType.UNDEFINED;
-            final boolean isNewVariable = !referencingUndefinedVariable && variableDoesNotExistYet;
-
-            if (isNewVariable) {
-                currentScope.put(variableName, variableExpressionType);
-            } else if (!variableDoesNotExistYet) {
-                final boolean newValueIsOfSameType = variableExpressionType != ExpressionType.UNDEFINED && existingVariableExpressionType == variableExpressionType;
-
-                if (newValueIsOfSameType) {
-                    currentScope.put(variableName, variableExpressionType);
-                } else {
-                    currentNode
-                            .setError(String.format(
-                                    "You can not change the data type of an existing variable! Expected type: %s Actual type: %s"
-                                    , existingVariableExpressionType
-                                    , variableExpressionType));
-                }
-            } else {
-                currentScope.put(variableName, ExpressionType.UNDEFINED);
-                currentNode.setError(String.format("VariableAssignment: %s is referencing an undefined variable", variableName));
-            }
+
+        @Override
+        public Boolean visitStylerule(Stylerule stylerule) {
+            enterScope();
+            return true;
+        }
+
+        @Override
+        public Boolean visitElseClause(ElseClause elseClause) {
+            enterScope();
+            return true;
+        }
+
+        @Override
+        public Boolean visitIfClause(IfClause ifClause) {
+            enterScope();
+            checkIfClauseSemantic(ifClause);
+            return true;
+        }
+
+        @Override
+        public Boolean visitVariableAssignment(VariableAssignment variableAssignment) {
+            variableBinder.enterAssignment(variableAssignment);
+            registerVariables(variableAssignment);
+            variableBinder.exitAssignment();
+            return false;
+        }
+
+        @Override
+        public Boolean visitVariableReference(VariableReference variableReference) {
+            checkScope(variableReference);
+            return false;
+        }
+
+        @Override
+        public Boolean visitOperation(Operation operation) {
+            checkOperationSemantic(operation);
+            return false;
+        }
+
+        @Override
+        public Boolean visitDeclaration(Declaration declaration) {
+            checkDeclarationSemantic(declaration);
+            return false;
+        }
+
+        @Override
+        public Boolean visitBooleanComparison(BooleanComparison booleanComparison) {
+            checkBooleanComparisonSemantic(booleanComparison);
+            return false;
+        }
+
+        @Override
+        public Boolean visitBooleanExpression(BooleanExpression booleanExpression) {
+            checkBooleanExpressionSemantic(booleanExpression);
+            return false;
         }
     }
 
-    private void checkSemantic(ASTNode currentNode) {
-        if (currentNode instanceof Operation) {
-            checkOperationSemantic(currentNode);
-        } else if (currentNode instanceof Declaration) {
-            checkDeclarationSemantic(currentNode);
-        } else if (currentNode instanceof IfClause) {
-            checkIfClauseSemantic(currentNode);
-        } else if (currentNode instanceof BooleanComparison) {
-            checkBooleanComparisonSemantic(currentNode);
-        } else if (currentNode instanceof BooleanExpression) {
-            checkBooleanExpressionSemantic(currentNode);
+    private void enterScope() {
+        variableTypes.enterScope();
+        variableBinder.enterScope();
+    }
+
+    private void registerVariables(VariableAssignment currentNode) {
+        VariableReference variable = currentNode.name;
+        String variableName = variable.name;
+        variableTypes.enterAssignment(currentNode);
+        ExpressionType existingVariableExpressionType = typeOrUndefined(variableTypes.getAssigned(currentNode));
+        ExpressionType variableExpressionType = determineExpressionType(currentNode.expression);
+
+        final boolean variableDoesNotExistYet = existingVariableExpressionType == ExpressionType.UNDEFINED;
+        final boolean referencingUndefinedVariable = variableDoesNotExistYet && variableExpressionType == ExpressionType.UNDEFINED;
+        final boolean isNewVariable = !referencingUndefinedVariable && variableDoesNotExistYet;
+
+        if (isNewVariable) {
+            variableTypes.assign(currentNode, variableExpressionType);
+        } else if (!variableDoesNotExistYet) {
+            final boolean newValueIsOfSameType = variableExpressionType != ExpressionType.UNDEFINED && existingVariableExpressionType == variableExpressionType;
+
+            if (newValueIsOfSameType) {
+                variableTypes.assign(currentNode, variableExpressionType);
+            } else {
+                errors.add(currentNode, String.format(
+                        "You can not change the data type of an existing variable! Expected type: %s Actual type: %s"
+                        , existingVariableExpressionType
+                        , variableExpressionType));
+            }
+        } else {
+            variableTypes.assign(currentNode, ExpressionType.UNDEFINED);
+            errors.add(currentNode, String.format("VariableAssignment: %s is referencing an undefined variable", variableName));
         }
     }
 
@@ -104,7 +353,7 @@ public class Checker {
         ExpressionType expressionType = determineExpressionType(expression);
 
         if (expressionType != ExpressionType.BOOL) {
-            currentNode.setError(String.format("BooleanExpression: Expected type: %s, Actual type: %s", ExpressionType.BOOL, expressionType));
+            errors.add(currentNode, String.format("BooleanExpression: Expected type: %s, Actual type: %s", ExpressionType.BOOL, expressionType));
         }
     }
 
@@ -117,39 +366,33 @@ public class Checker {
         final boolean bothSidesSameType = left == right;
 
         if (bothSidesSameType) {
-            checkValidityOperatorWithExpressionType(currentNode, left, right, operator);
+            checkValidityOperatorWithExpressionType(currentNode, left, operator);
         } else {
-            currentNode.setError("BooleanComparison: Both sides must be of the same data type!");
+            errors.add(currentNode, "BooleanComparison: Both sides must be of the same data type!");
         }
     }
 
-    private void checkValidityOperatorWithExpressionType(ASTNode currentNode, ExpressionType left, ExpressionType right, ComparisonOperator operator) {
-        final boolean isNotEqualityOperator = operator != ComparisonOperator.EQ && operator != ComparisonOperator.NQ;
-        final boolean isNotLogicOperator = operator != ComparisonOperator.AND && operator != ComparisonOperator.OR;
-        final boolean isNonNumericExpressionType = left == ExpressionType.COLOR || right == ExpressionType.BOOL;
-
-        final boolean isIllegalBooleanComparison = (isNotEqualityOperator && isNotLogicOperator) && isNonNumericExpressionType;
-
-        if (isIllegalBooleanComparison) {
-            currentNode.setError(String.format("BooleanComparison: Non numeric literals can not be used with the %s operator", operator));
+    private void checkValidityOperatorWithExpressionType(ASTNode currentNode, ExpressionType type, ComparisonOperator operator) {
+        if (!OperatorTypes.isComparable(operator, type)) {
+            errors.add(currentNode, String.format("BooleanComparison: Non numeric literals can not be used with the %s operator", operator));
         }
     }
 
     private void checkOperationSemantic(ASTNode currentNode) {
         if (!isOperationAllowed((Operation) currentNode)) {
-            currentNode.setError("Illegal operation");
+            errors.add(currentNode, "Illegal operation");
         }
     }
 
     private void checkDeclarationSemantic(ASTNode currentNode) {
         final String propertyName = ((Declaration) currentNode).property.name;
 
-        if (isPropertyIllegal(propertyName)) {
-            currentNode.setError(String.format("%s is not a legal property name!", propertyName));
+        if (!propertySchema.contains(propertyName)) {
+            errors.add(currentNode, String.format("%s is not a legal property name!", propertyName));
         }
 
         if (!isPropertyValueTypeAllowed(currentNode)) {
-            currentNode.setError(String.format("%s has an illegal value type or expression!", propertyName));
+            errors.add(currentNode, String.format("%s has an illegal value type or expression!", propertyName));
         }
     }
 
@@ -158,208 +401,212 @@ public class Checker {
         final ExpressionType expressionType = determineExpressionType(conditionalExpression);
 
         if (expressionType != ExpressionType.BOOL) {
-            currentNode.setError(String.format("If Clause: Expected type: %s. Actual type: %s", ExpressionType.BOOL, expressionType));
+            errors.add(currentNode, String.format("If Clause: Expected type: %s. Actual type: %s", ExpressionType.BOOL, expressionType));
         }
     }
 
-    private boolean isPropertyIllegal(String propertyName) {
-        List<String> allowedProperties = new ArrayList<>(Arrays.asList("background-color", "color", "width", "height"));
-
-        return !allowedProperties.contains(propertyName);
-    }
-
     private boolean isPropertyValueTypeAllowed(ASTNode currentNode) {
         final String propertyName = ((Declaration) currentNode).property.name;
         final Expression expression = ((Declaration) currentNode).expression;
-        ExpressionType propertyExpressionType = determineExpressionType(expression);
+        final ExpressionType propertyExpressionType = determineExpressionType(expression);
 
         final boolean isExpression = propertyExpressionType == ExpressionType.UNDEFINED;
 
-        if (propertyName.equals("background-color") || propertyName.equals("color")) {
-            if (isExpression) {
-                if (expression instanceof VariableReference) {
-                    propertyExpressionType = getExpressionType(expression);
-                } else if (expression instanceof Operation) {
-                    return isOperationAllowed((Operation) expression);
-                }
-            }
-
-            return propertyExpressionType == ExpressionType.COLOR;
-        } else {
-            if (isExpression) {
-                if (expression instanceof VariableReference) {
-                    propertyExpressionType = getExpressionType(expression);
-                } else if (expression instanceof Operation) {
-                    return isOperationAllowed((Operation) expression);
-                }
-            }
-            return propertyExpressionType == ExpressionType.PERCENTAGE
-                    || propertyExpressionType == ExpressionType.PIXEL;
+        if (isExpression && expression instanceof Operation) {
+            return isOperationAllowed((Operation) expression);
         }
+
+        return propertySchema.isAllowed(propertyName, propertyExpressionType);
     }
 
     private boolean isOperationAllowed(Operation operation) {
-        expressionTypes.clear();
-        return validateOperation(operation);
+        return validateOperation(operation) != ExpressionType.UNDEFINED;
     }
 
-    private boolean validateOperation(Operation operation) {
-        Expression left = operation.lhs;
-        Expression right = operation.rhs;
+    /*
+     Returns the type of the result of the operation, or UNDEFINED when it is illegal. Every operation is validated
+     once per check: the operations in it are validated first and their types are kept for when the checker visits them.
+     */
+    private ExpressionType validateOperation(Operation operation) {
+        Operation.InferredType inferred = operation.inferred;
 
-        if (addExpressionTypeToList(left)) {
-            return false;
+        if (inferred == null || inferred.checkId != checkId) {
+            inferred = inferredTypes[validateOperationExpressionTypes(operation).ordinal()];
+            operation.inferred = inferred;
         }
+        return inferred.type;
+    }
 
-        if (addExpressionTypeToList(right)) {
-            return false;
-        }
+    private ExpressionType validateOperationExpressionTypes(Operation operation) {
+        final ExpressionType leftType = determineOperandType(operation.lhs);
+        final ExpressionType rightType = determineOperandType(operation.rhs);
 
-        return validateOperationExpressionTypes(operation);
+        return OperatorTypes.resultOf(operation.getOperator(), leftType, rightType);
     }
 
-    private boolean addExpressionTypeToList(Expression expression) {
-        if (expression instanceof Operation) {
-            return !validateOperation((Operation) expression);
-        } else if (expression instanceof VariableReference) {
-            ExpressionType expressionType = getVariableExpressionType(((VariableReference) expression).name);
-            if (expressionType != ExpressionType.UNDEFINED) {
-                expressionTypes.addFirst(expressionType);
-            } else {
-                return true;
-            }
-        } else if (expression instanceof Literal) {
-            ExpressionType expressionType = determineExpressionType(expression);
-            if (expressionType != ExpressionType.UNDEFINED) {
-                expressionTypes.addFirst(expressionType);
-            }
-        }
-        return false;
+    private ExpressionType determineOperandType(Expression operand) {
+        return operand != null ? operand.accept(operandTypeOf) : ExpressionType.UNDEFINED;
     }
 
-    private boolean validateOperationExpressionTypes(Operation operation) {
-        ExpressionType leftType = expressionTypes.removeFirst();
-        ExpressionType rightType = expressionTypes.removeFirst();
+    /*
+     The type of an operation by the literals it holds: a percentage or pixel literal on either side makes it of that type,
+     a scalar literal on both sides a scalar. Without those it takes the type of its left or else its right operation.
+     */
+    private ExpressionType determineOperationExpressionType(Operation operation) {
+        final ExpressionType leftType = literalOperandType(operation.lhs);
+        final ExpressionType rightType = literalOperandType(operation.rhs);
 
-        if (hasIllegalExpressionTypes(leftType, rightType)) {
-            return false;
+        if (leftType == ExpressionType.PERCENTAGE || rightType == ExpressionType.PERCENTAGE) {
+            return ExpressionType.PERCENTAGE;
+        } else if (leftType == ExpressionType.PIXEL || rightType == ExpressionType.PIXEL) {
+            return ExpressionType.PIXEL;
+        } else if (leftType == ExpressionType.SCALAR && rightType == ExpressionType.SCALAR) {
+            return ExpressionType.SCALAR;
+        } else if (leftType == null) {
+            return determineOperationExpressionType((Operation) operation.lhs);
+        } else if (rightType == null) {
+            return determineOperationExpressionType((Operation) operation.rhs);
         }
 
-        if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
-            return validateAddSubtractOperationExpressionTypes(leftType, rightType);
-        } else if (operation instanceof MultiplyOperation) {
-            return validateMultiplyExpressionTypes(leftType, rightType);
+        return ExpressionType.UNDEFINED;
+    }
+
+    private static ExpressionType literalOperandType(Expression operand) {
+        return operand != null ? operand.accept(LITERAL_OPERAND_TYPE_OF) : ExpressionType.UNDEFINED;
+    }
+
+    private void checkScope(VariableReference currentNode) {
+        final String variableName = currentNode.name;
+        if (!isVariableInScope(currentNode)) {
+            errors.add(currentNode, String.format("%s variable has not been initialized!", variableName));
         }
+    }
 
-        return false;
+    private boolean isVariableInScope(VariableReference variable) {
+        return getVariableType(variable) != null;
     }
 
-    private boolean hasIllegalExpressionTypes(ExpressionType leftType, ExpressionType rightType) {
-        return (leftType == ExpressionType.COLOR
-                || rightType == ExpressionType.COLOR)
-                || (leftType == ExpressionType.BOOL || rightType == ExpressionType.BOOL);
+    private ExpressionType getVariableExpressionType(VariableReference variable) {
+        return typeOrUndefined(getVariableType(variable));
     }
 
-    private boolean validateMultiplyExpressionTypes(ExpressionType leftType, ExpressionType rightType) {
-        final boolean hasAtLeastOneScalar = leftType == ExpressionType.SCALAR || rightType == ExpressionType.SCALAR;
-        final boolean hasValidExpressionType = (leftType == ExpressionType.PIXEL || rightType == ExpressionType.PIXEL)
-                || (leftType == ExpressionType.PERCENTAGE || rightType == ExpressionType.PERCENTAGE)
-                || (rightType == ExpressionType.SCALAR);
+    /*
+     A reference is bound when the check reads it, the expression of a node is read before its children are visited.
+     */
+    private ExpressionType getVariableType(VariableReference variable) {
+        variableBinder.bindReference(variable);
+        return variableTypes.get(variable);
+    }
 
-        if (hasAtLeastOneScalar && hasValidExpressionType) {
-            if (leftType != ExpressionType.SCALAR) {
-                expressionTypes.addFirst(leftType);
-            } else {
-                expressionTypes.addFirst(rightType);
-            }
+    private ExpressionType typeOrUndefined(ExpressionType expressionType) {
+        final boolean expressionTypeDetermined = expressionType != null;
 
-            return true;
-        }
-        return false;
+        return expressionTypeDetermined ? expressionType : ExpressionType.UNDEFINED;
     }
 
-    private boolean validateAddSubtractOperationExpressionTypes(ExpressionType leftType, ExpressionType rightType) {
-        final boolean isMatchingExpressionType = leftType == rightType;
+    private ExpressionType determineExpressionType(Expression expression) {
+        return expression != null ? expression.accept(expressionTypeOf) : ExpressionType.UNDEFINED;
+    }
 
-        if (isMatchingExpressionType) {
-            expressionTypes.addFirst(leftType);
-            return true;
+    private class ExpressionTypeOf extends ASTVisitor<ExpressionType> {
+        @Override
+        public ExpressionType visitNode(ASTNode node) {
+            return ExpressionType.UNDEFINED;
         }
-        return false;
-    }
 
-    private ExpressionType determineOperationExpressionType(Operation operation) {
-        if (operation.lhs instanceof PercentageLiteral || operation.rhs instanceof PercentageLiteral) {
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral literal) {
+            return ExpressionType.BOOL;
+        }
+
+        @Override
+        public ExpressionType visitBooleanExpression(BooleanExpression booleanExpression) {
+            return ExpressionType.BOOL;
+        }
+
+        @Override
+        public ExpressionType visitBooleanComparison(BooleanComparison booleanComparison) {
+            return ExpressionType.BOOL;
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral literal) {
+            return ExpressionType.COLOR;
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral literal) {
             return ExpressionType.PERCENTAGE;
-        } else if (operation.lhs instanceof PixelLiteral || operation.rhs instanceof PixelLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral literal) {
             return ExpressionType.PIXEL;
-        } else if (operation.lhs instanceof ScalarLiteral && operation.rhs instanceof ScalarLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral literal) {
             return ExpressionType.SCALAR;
-        } else if (operation.lhs instanceof Operation) {
-            return determineOperationExpressionType((Operation) operation.lhs);
-        } else if (operation.rhs instanceof Operation) {
-            return determineOperationExpressionType((Operation) operation.rhs);
         }
 
-        return ExpressionType.UNDEFINED;
-    }
+        @Override
+        public ExpressionType visitVariableReference(VariableReference variableReference) {
+            return getVariableExpressionType(variableReference);
+        }
 
-    private ExpressionType getExpressionType(Expression expression) {
-        final String variableName = ((VariableReference) expression).name;
-        return getVariableExpressionType(variableName);
+        @Override
+        public ExpressionType visitOperation(Operation operation) {
+            return determineOperationExpressionType(operation);
+        }
     }
 
-    private void checkScope(ASTNode currentNode) {
-        if (currentNode instanceof VariableReference) {
-            final String variableName = ((VariableReference) currentNode).name;
-            if (!isVariableInScope(variableName)) {
-                currentNode.setError(String.format("%s variable has not been initialized!", variableName));
-            }
+    /*
+     The type of an operand of an operation: a nested operation is validated, booleans are no operands.
+     */
+    private class OperandTypeOf extends ExpressionTypeOf {
+        @Override
+        public ExpressionType visitBooleanExpression(BooleanExpression booleanExpression) {
+            return ExpressionType.UNDEFINED;
         }
-    }
 
-    private boolean isVariableInScope(String variableName) {
-        for (HashMap<String, ExpressionType> scope : variableTypes) {
-            if (scope.get(variableName) != null) {
-                return true;
-            }
+        @Override
+        public ExpressionType visitBooleanComparison(BooleanComparison booleanComparison) {
+            return ExpressionType.UNDEFINED;
         }
 
-        return false;
+        @Override
+        public ExpressionType visitOperation(Operation operation) {
+            return validateOperation(operation);
+        }
     }
 
-    private ExpressionType getVariableExpressionType(String variableName) {
-        for (HashMap<String, ExpressionType> currentScope : variableTypes) {
-            ExpressionType expressionType = currentScope.get(variableName);
-
-            final boolean expressionTypeDetermined = expressionType != null;
-
-            if (expressionTypeDetermined) {
-                return expressionType;
-            }
+    /*
+     The type of a percentage, pixel or scalar literal operand, null for an operation and UNDEFINED for anything else.
+     */
+    private static class LiteralOperandTypeOf extends ASTVisitor<ExpressionType> {
+        @Override
+        public ExpressionType visitNode(ASTNode node) {
+            return ExpressionType.UNDEFINED;
         }
 
-        return ExpressionType.UNDEFINED;
-    }
+        @Override
+        public ExpressionType visitOperation(Operation operation) {
+            return null;
+        }
 
-    private ExpressionType determineExpressionType(Expression expression) {
-        if (expression instanceof BoolLiteral || expression instanceof BooleanExpression || expression instanceof BooleanComparison) {
-            return ExpressionType.BOOL;
-        } else if (expression instanceof ColorLiteral) {
-            return ExpressionType.COLOR;
-        } else if (expression instanceof PercentageLiteral) {
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral literal) {
             return ExpressionType.PERCENTAGE;
-        } else if (expression instanceof PixelLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral literal) {
             return ExpressionType.PIXEL;
-        } else if (expression instanceof ScalarLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral literal) {
             return ExpressionType.SCALAR;
-        } else if (expression instanceof VariableReference) {
-            return getVariableExpressionType(((VariableReference) expression).name);
-        } else {
-            if (expression instanceof Operation) {
-                return determineOperationExpressionType((Operation) expression);
-            }
-            return ExpressionType.UNDEFINED;
         }
     }
 }
@@ -0,0 +1,87 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The semantic errors of one check in the order they were found, each with the node it belongs to.
+ * A node can have more than one error. With a maximum, errors after it are dropped and the check stops.
+ */
+public class ErrorCollector {
+
+    public static final int UNLIMITED = 0;
+
+    private final List<SemanticError> errors = new ArrayList<>();
+    private final int maxErrors;
+    //A collector for a part of a check only sets the errors on their nodes when they are added to the collector of the check
+    private final boolean setsNodeErrors;
+
+    public ErrorCollector() {
+        this(UNLIMITED);
+    }
+
+    public ErrorCollector(int maxErrors) {
+        this(maxErrors, true);
+    }
+
+    private ErrorCollector(int maxErrors, boolean setsNodeErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException(String.format("Maximum number of errors: %d", maxErrors));
+        }
+        this.maxErrors = maxErrors;
+        this.setsNodeErrors = setsNodeErrors;
+    }
+
+    /**
+     * A collector for the errors of a part of the check, which are added to the collector of the check with {@link #addAll}.
+     */
+    static ErrorCollector forPart(int maxErrors) {
+        return new ErrorCollector(maxErrors, false);
+    }
+
+    /**
+     * Records the error and sets it on the node as well, for the tree view of the GUI which shows the last error of a node.
+     */
+    public void add(ASTNode node, String description) {
+        if (isFull()) {
+            return;
+        }
+        if (setsNodeErrors) {
+            node.setError(description);
+        }
+        errors.add(new SemanticError(description, node));
+    }
+
+    /**
+     * Adds the errors of the part in their order, up to the maximum.
+     */
+    void addAll(ErrorCollector part) {
+        for (SemanticError error : part.errors) {
+            if (isFull()) {
+                return;
+            }
+            if (setsNodeErrors) {
+                error.node.setError(error.description);
+            }
+            errors.add(error);
+        }
+    }
+
+    /**
+     * Whether the maximum number of errors was reached.
+     */
+    public boolean isFull() {
+        return maxErrors != UNLIMITED && errors.size() >= maxErrors;
+    }
+
+    public boolean isEmpty() {
+        return errors.isEmpty();
+    }
+
+    public List<SemanticError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+}
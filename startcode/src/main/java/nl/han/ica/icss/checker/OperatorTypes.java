@@ -0,0 +1,76 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ArithmeticOperator;
+import nl.han.ica.icss.ast.ComparisonOperator;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import java.util.Arrays;
+
+/**
+ * The types the operators of ICSS accept, as tables indexed by the ordinals of the operator and the operand types.
+ * A new unit or operator is supported by adding its entries to the tables below.
+ */
+public final class OperatorTypes {
+
+    private static final ExpressionType[] TYPES = ExpressionType.values();
+
+    //The type of the result for every operator, left and right type, UNDEFINED when the operation is illegal
+    private static final ExpressionType[] OPERATION_RESULTS = new ExpressionType[ArithmeticOperator.values().length * TYPES.length * TYPES.length];
+    //Whether a comparison of two sides of the same type is legal, for every operator and type
+    private static final boolean[] COMPARABLE = new boolean[ComparisonOperator.values().length * TYPES.length];
+
+    static {
+        Arrays.fill(OPERATION_RESULTS, ExpressionType.UNDEFINED);
+
+        //Adding and subtracting keep the unit, both sides must have the same one
+        for (ArithmeticOperator operator : new ArithmeticOperator[]{ArithmeticOperator.ADD, ArithmeticOperator.SUBTRACT}) {
+            defineOperation(operator, ExpressionType.PIXEL, ExpressionType.PIXEL, ExpressionType.PIXEL);
+            defineOperation(operator, ExpressionType.PERCENTAGE, ExpressionType.PERCENTAGE, ExpressionType.PERCENTAGE);
+            defineOperation(operator, ExpressionType.SCALAR, ExpressionType.SCALAR, ExpressionType.SCALAR);
+        }
+
+        //Multiplying scales a value, at least one side must be a scalar
+        defineOperation(ArithmeticOperator.MULTIPLY, ExpressionType.SCALAR, ExpressionType.SCALAR, ExpressionType.SCALAR);
+        defineOperation(ArithmeticOperator.MULTIPLY, ExpressionType.SCALAR, ExpressionType.PIXEL, ExpressionType.PIXEL);
+        defineOperation(ArithmeticOperator.MULTIPLY, ExpressionType.PIXEL, ExpressionType.SCALAR, ExpressionType.PIXEL);
+        defineOperation(ArithmeticOperator.MULTIPLY, ExpressionType.SCALAR, ExpressionType.PERCENTAGE, ExpressionType.PERCENTAGE);
+        defineOperation(ArithmeticOperator.MULTIPLY, ExpressionType.PERCENTAGE, ExpressionType.SCALAR, ExpressionType.PERCENTAGE);
+
+        //Equality and the logic operators accept every type, the ordering operators only numbers.
+        //An UNDEFINED side is reported where it is found, not by the comparison
+        for (ComparisonOperator operator : ComparisonOperator.values()) {
+            final boolean isOrderingOperator = operator != ComparisonOperator.EQ && operator != ComparisonOperator.NQ
+                    && operator != ComparisonOperator.AND && operator != ComparisonOperator.OR;
+
+            for (ExpressionType type : TYPES) {
+                final boolean isNonNumeric = type == ExpressionType.COLOR || type == ExpressionType.BOOL;
+                COMPARABLE[operator.ordinal() * TYPES.length + type.ordinal()] = !isOrderingOperator || !isNonNumeric;
+            }
+        }
+    }
+
+    private OperatorTypes() {
+    }
+
+    private static void defineOperation(ArithmeticOperator operator, ExpressionType left, ExpressionType right, ExpressionType result) {
+        OPERATION_RESULTS[operationIndex(operator, left, right)] = result;
+    }
+
+    private static int operationIndex(ArithmeticOperator operator, ExpressionType left, ExpressionType right) {
+        return (operator.ordinal() * TYPES.length + left.ordinal()) * TYPES.length + right.ordinal();
+    }
+
+    /**
+     * The type of the result of the operator on values of the types, UNDEFINED when the operator does not accept them.
+     */
+    public static ExpressionType resultOf(ArithmeticOperator operator, ExpressionType left, ExpressionType right) {
+        return OPERATION_RESULTS[operationIndex(operator, left, right)];
+    }
+
+    /**
+     * Whether the comparison operator accepts two sides of the type.
+     */
+    public static boolean isComparable(ComparisonOperator operator, ExpressionType type) {
+        return COMPARABLE[operator.ordinal() * TYPES.length + type.ordinal()];
+    }
+}
@@ -0,0 +1,280 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CSS properties the checker accepts and the value types each of them allows, read from a schema.
+ * <p>
+ * Every line of a schema is a property followed by the types of its values, such as {@code width: PIXEL PERCENTAGE}.
+ * The property {@code *} gives the types that are checked for the value of a property that is not in the schema.
+ * Empty lines and lines starting with # are skipped.
+ * <p>
+ * The properties are compiled into a perfect hash table with a bitmask of {@link ExpressionType}s per property,
+ * so looking up a property takes one probe and allocates nothing.
+ */
+public class PropertySchema {
+
+    //The schema of the ICSS language, a resource next to this class
+    private static final String DEFAULT_RESOURCE = "properties.schema";
+    private static final String UNKNOWN_PROPERTY = "*";
+    private static PropertySchema defaultSchema;
+
+    //A bucket of a few properties shares a seed that puts all of them in free slots, there are 8 slots per bucket
+    private static final int SLOTS_PER_BUCKET = 8;
+    private static final int MAX_SEED = 1 << 16;
+    //The table grows when the buckets find no seeds, up to this many times its first size
+    private static final int MAX_GROWTH = 16;
+
+    private final int[] bucketSeeds;
+    private final String[] slotProperties;
+    private final int[] slotTypes;
+    private final int unknownPropertyTypes;
+    private final int size;
+
+    private PropertySchema(Map<String, Integer> properties, int unknownPropertyTypes) {
+        this.unknownPropertyTypes = unknownPropertyTypes;
+        this.size = properties.size();
+
+        checkKeysDiffer(properties.keySet());
+        final int firstSlotCount = Integer.highestOneBit(Math.max(SLOTS_PER_BUCKET, properties.size() * 2 - 1)) << 1;
+        int slotCount = firstSlotCount;
+        int[] seeds;
+        while ((seeds = placeProperties(properties.keySet(), slotCount)) == null) {
+            slotCount <<= 1;
+            if (slotCount > firstSlotCount * MAX_GROWTH) {
+                throw new IllegalArgumentException(String.format("No perfect hash table for the %d properties of the schema", properties.size()));
+            }
+        }
+
+        bucketSeeds = seeds;
+        slotProperties = new String[slotCount];
+        slotTypes = new int[slotCount];
+        for (Map.Entry<String, Integer> property : properties.entrySet()) {
+            final int slot = slotOf(property.getKey(), seeds, slotCount);
+            slotProperties[slot] = property.getKey();
+            slotTypes[slot] = property.getValue();
+        }
+    }
+
+    /**
+     * The schema of the ICSS language: background-color, color, width and height.
+     */
+    public static synchronized PropertySchema getDefault() {
+        if (defaultSchema == null) {
+            try (InputStream stream = PropertySchema.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (stream == null) {
+                    throw new IllegalStateException("Missing resource: " + DEFAULT_RESOURCE);
+                }
+                defaultSchema = read(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultSchema;
+    }
+
+    public static PropertySchema load(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return read(stream);
+        }
+    }
+
+    /**
+     * Reads a schema, an invalid line throws an {@link IllegalArgumentException} with its line number.
+     * A schema of which the properties cannot be placed in the hash table throws one as well.
+     */
+    public static PropertySchema read(InputStream stream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        LinkedHashMap<String, Integer> properties = new LinkedHashMap<>();
+        int unknownPropertyTypes = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException(String.format("Line %d: expected property: types, found: %s", lineNumber, line));
+            }
+            final String property = line.substring(0, colon).trim();
+            final int types = parseTypes(line.substring(colon + 1).trim(), lineNumber);
+
+            if (property.equals(UNKNOWN_PROPERTY)) {
+                unknownPropertyTypes = types;
+            } else if (properties.putIfAbsent(property, types) != null) {
+                throw new IllegalArgumentException(String.format("Line %d: %s is already in the schema", lineNumber, property));
+            }
+        }
+
+        return new PropertySchema(properties, unknownPropertyTypes);
+    }
+
+    private static int parseTypes(String types, int lineNumber) {
+        int mask = 0;
+        for (String type : types.split("\\s+")) {
+            if (type.isEmpty()) {
+                continue;
+            }
+            try {
+                mask |= maskOf(ExpressionType.valueOf(type));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Line %d: unknown value type: %s", lineNumber, type), e);
+            }
+        }
+        return mask;
+    }
+
+    public static int maskOf(ExpressionType type) {
+        return 1 << type.ordinal();
+    }
+
+    public boolean contains(String property) {
+        return property.equals(slotProperties[slotOf(property, bucketSeeds, slotProperties.length)]);
+    }
+
+    /**
+     * The mask of the types the values of the property may have, for a property that is not in the schema
+     * the types of the {@code *} line.
+     */
+    public int getAllowedTypes(String property) {
+        final int slot = slotOf(property, bucketSeeds, slotProperties.length);
+        return property.equals(slotProperties[slot]) ? slotTypes[slot] : unknownPropertyTypes;
+    }
+
+    public boolean isAllowed(String property, ExpressionType type) {
+        return (getAllowedTypes(property) & maskOf(type)) != 0;
+    }
+
+    /**
+     * The number of properties in the schema.
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     Hash and displace: the properties are grouped in buckets by their hash, and the buckets, largest first,
+     get the first seed that moves all their properties to free slots. Returns null when a bucket finds no seed.
+     */
+    private static int[] placeProperties(Iterable<String> properties, int slotCount) {
+        final int bucketCount = slotCount / SLOTS_PER_BUCKET;
+        List<List<String>> buckets = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String property : properties) {
+            buckets.get(mix(keyOf(property), 0) & (bucketCount - 1)).add(property);
+        }
+
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int[] seeds = new int[bucketCount];
+        boolean[] taken = new boolean[slotCount];
+        int[] slots = new int[SLOTS_PER_BUCKET * 4];
+        for (int bucket : order) {
+            final List<String> members = buckets.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            if (members.size() > slots.length) {
+                return null;
+            }
+
+            int seed = 1;
+            while (!fits(members, seed, slotCount, taken, slots)) {
+                if (++seed == MAX_SEED) {
+                    return null;
+                }
+            }
+            seeds[bucket] = seed;
+            for (int i = 0; i < members.size(); i++) {
+                taken[slots[i]] = true;
+            }
+        }
+        return seeds;
+    }
+
+    private static boolean fits(List<String> members, int seed, int slotCount, boolean[] taken, int[] slots) {
+        for (int i = 0; i < members.size(); i++) {
+            final int slot = mix(keyOf(members.get(i)), seed) & (slotCount - 1);
+            if (taken[slot]) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+
+    private static int slotOf(String property, int[] seeds, int slotCount) {
+        final int key = keyOf(property);
+        final int seed = seeds[mix(key, 0) & (seeds.length - 1)];
+        return mix(key, seed) & (slotCount - 1);
+    }
+
+    /*
+     The key a property is placed by. Names such as cn and e0 have the same String hash, which no seed separates,
+     so it is combined with an FNV-1a hash of the characters.
+     */
+    private static int keyOf(String property) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < property.length(); i++) {
+            hash = (hash ^ property.charAt(i)) * 0x01000193;
+        }
+        return property.hashCode() ^ hash;
+    }
+
+    /*
+     Properties with the same key end up in the same slot for every seed, the schema cannot hold both.
+     */
+    private static void checkKeysDiffer(Iterable<String> properties) {
+        Map<Integer, String> propertiesByKey = new HashMap<>();
+        for (String property : properties) {
+            final String other = propertiesByKey.putIfAbsent(keyOf(property), property);
+            if (other != null) {
+                throw new IllegalArgumentException(String.format("%s and %s have the same hash, the schema cannot hold both", other, property));
+            }
+        }
+    }
+
+    /*
+     The finalizer of MurmurHash3, the seed picks one of many different mixes of the same hash.
+     */
+    private static int mix(int hash, int seed) {
+        int h = hash ^ (seed * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,219 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.SymbolTable;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * The errors of the style rules of the last check, so a check of an edited stylesheet only checks the rules that changed.
+ * A style rule reads nothing of the stylesheet but the variables assigned before it: its errors are those of the last check
+ * when its content is equal and the variables it names have the same types as they had then.
+ * <p>
+ * A rule that is still the same object is found through {@link Stylerule#checkCacheEntry}, other rules are compared by content,
+ * so they are also recognised after the whole stylesheet was parsed again. The cache keeps the rules it checked:
+ * an AST that is changed in place after a check, like by a transform, needs {@link #clear()} before its next check.
+ * Only the rules of the last check are kept.
+ */
+public class RuleCheckCache {
+
+    //The entries of the rules of the last check and of the current one by content hash, one rule per hash
+    private Map<Integer, Entry> lastCheck = new HashMap<>();
+    private Map<Integer, Entry> currentCheck = new HashMap<>();
+    //Every check has a number, the entry a rule holds is only valid in the check after the one that stored it
+    private int checkNumber = 0;
+    //The settings of the check the rules were checked with, other settings can give other errors
+    private SymbolTable symbols;
+    private PropertySchema propertySchema;
+    private int maxErrors;
+    private int reusedRuleCount;
+
+    /**
+     * Forgets the rules of the last check.
+     */
+    public void clear() {
+        lastCheck = new HashMap<>();
+        currentCheck = new HashMap<>();
+        checkNumber++;
+    }
+
+    /**
+     * The number of style rules the last check took the errors of from this cache instead of checking them.
+     */
+    public int getReusedRuleCount() {
+        return reusedRuleCount;
+    }
+
+    void startCheck(SymbolTable symbols, PropertySchema propertySchema, int maxErrors) {
+        if (symbols != this.symbols || propertySchema != this.propertySchema || maxErrors != this.maxErrors) {
+            clear();
+            this.symbols = symbols;
+            this.propertySchema = propertySchema;
+            this.maxErrors = maxErrors;
+        }
+        checkNumber++;
+        reusedRuleCount = 0;
+    }
+
+    void finishCheck() {
+        lastCheck = currentCheck;
+        currentCheck = new HashMap<>(lastCheck.size() * 4 / 3 + 1);
+    }
+
+    /**
+     * The entry of an equal rule of the last check, when the variables it names have the types they had then.
+     * Checks on other threads may look up rules at the same time, as long as nothing is stored.
+     */
+    Entry lookup(Stylerule rule, IntFunction<ExpressionType> typeOfVariable) {
+        Entry entry = rule.checkCacheEntry;
+        final boolean isSameRule = entry != null && entry.cache == this && entry.checkNumber == checkNumber - 1 && entry.rule == rule;
+
+        if (!isSameRule) {
+            entry = lastCheck.get(rule.contentHash());
+            if (entry == null || !entry.rule.contentEquals(rule)) {
+                return null;
+            }
+        }
+        for (int i = 0; i < entry.variables.length; i++) {
+            if (typeOfVariable.apply(entry.variables[i]) != entry.variableTypes[i]) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Adds the errors of the entry to the collector, for the nodes of the rule at the places they had in the rule of the entry.
+     */
+    void addErrors(Entry entry, Stylerule rule, ErrorCollector errors) {
+        if (entry.errorNodes.length == 0) {
+            return;
+        }
+
+        List<ASTNode> nodes = new ArrayList<>();
+        addNodes(rule, nodes);
+        for (int i = 0; i < entry.errorNodes.length; i++) {
+            errors.add(nodes.get(entry.errorNodes[i]), entry.errorDescriptions[i]);
+        }
+    }
+
+    private static void addNodes(ASTNode node, List<ASTNode> nodes) {
+        nodes.add(node);
+        final int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            addNodes(node.getChild(i), nodes);
+        }
+    }
+
+    /**
+     * An entry for the rule that was just checked with the errors, with the types the variables it names have.
+     */
+    Entry entryOf(Stylerule rule, ErrorCollector errors, IntFunction<ExpressionType> typeOfVariable) {
+        RuleWalker walker = new RuleWalker(errors.getErrors());
+        walker.walk(rule);
+
+        final int[] variables = Arrays.copyOf(walker.variables, walker.variableCount);
+        final ExpressionType[] variableTypes = new ExpressionType[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            variableTypes[i] = typeOfVariable.apply(variables[i]);
+        }
+        return new Entry(rule, rule.contentHash(), variables, variableTypes, walker.errorNodes, walker.errorDescriptions);
+    }
+
+    /**
+     * Keeps the entry for the rule for the next check. Only the thread of the check stores entries.
+     */
+    void store(Stylerule rule, Entry entry, boolean reused) {
+        final Entry stored = entry.rule == rule ? entry : new Entry(rule, entry.contentHash, entry.variables, entry.variableTypes, entry.errorNodes, entry.errorDescriptions);
+        stored.cache = this;
+        stored.checkNumber = checkNumber;
+        rule.checkCacheEntry = stored;
+        currentCheck.put(stored.contentHash, stored);
+        if (reused) {
+            reusedRuleCount++;
+        }
+    }
+
+    /**
+     * The variables a rule names and the errors it has, by the index of their node in the preorder of the rule.
+     */
+    public static class Entry {
+        private final Stylerule rule;
+        private final int contentHash;
+        private final int[] variables;
+        private final ExpressionType[] variableTypes;
+        private final int[] errorNodes;
+        private final String[] errorDescriptions;
+        //The cache and the check that stored the entry
+        private RuleCheckCache cache;
+        private int checkNumber;
+
+        private Entry(Stylerule rule, int contentHash, int[] variables, ExpressionType[] variableTypes, int[] errorNodes, String[] errorDescriptions) {
+            this.rule = rule;
+            this.contentHash = contentHash;
+            this.variables = variables;
+            this.variableTypes = variableTypes;
+            this.errorNodes = errorNodes;
+            this.errorDescriptions = errorDescriptions;
+        }
+    }
+
+    /*
+     Collects the symbols of the names a rule references or assigns, each once, and the preorder indexes of the nodes of its errors.
+     */
+    private class RuleWalker {
+        private final List<SemanticError> errors;
+        private final int[] errorNodes;
+        private final String[] errorDescriptions;
+        private int[] variables = new int[4];
+        private int variableCount = 0;
+        private int nodeIndex = 0;
+
+        RuleWalker(List<SemanticError> errors) {
+            this.errors = errors;
+            errorNodes = new int[errors.size()];
+            errorDescriptions = new String[errors.size()];
+            for (int i = 0; i < errorDescriptions.length; i++) {
+                errorDescriptions[i] = errors.get(i).description;
+            }
+        }
+
+        void walk(ASTNode node) {
+            for (int i = 0; i < errorNodes.length; i++) {
+                if (errors.get(i).node == node) {
+                    errorNodes[i] = nodeIndex;
+                }
+            }
+            nodeIndex++;
+
+            if (node instanceof VariableReference) {
+                addVariable((VariableReference) node);
+            }
+            final int childCount = node.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                walk(node.getChild(i));
+            }
+        }
+
+        private void addVariable(VariableReference variable) {
+            final int symbol = variable.symbolId != SymbolTable.NO_SYMBOL ? variable.symbolId : symbols.intern(variable.name);
+            for (int i = 0; i < variableCount; i++) {
+                if (variables[i] == symbol) {
+                    return;
+                }
+            }
+            if (variableCount == variables.length) {
+                variables = Arrays.copyOf(variables, variableCount * 2);
+            }
+            variables[variableCount++] = symbol;
+        }
+    }
+}
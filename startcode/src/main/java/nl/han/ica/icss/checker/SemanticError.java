@@ -1,10 +1,19 @@
 package nl.han.ica.icss.checker;
 
+import nl.han.ica.icss.ast.ASTNode;
+
 public class SemanticError {
     public String description;
+    //The node the error was found at, null when it is not known
+    public ASTNode node;
 
     public SemanticError(String description) {
+        this(description, null);
+    }
+
+    public SemanticError(String description, ASTNode node) {
         this.description = description;
+        this.node = node;
     }
 
     public String toString() {
@@ -0,0 +1,368 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.checker.ErrorCollector;
+import nl.han.ica.icss.checker.PropertySchema;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point that compiles many ICSS files at once.
+ * Every file gets its own {@link Pipeline}, the files are spread over a work-stealing pool.
+ * <p>
+ * Usage: {@code BatchCompiler [-o outputDirectory] [-j threads] [-m maxErrors] [-p propertySchema] (file | directory | glob)...}
+ * With -m the check of a file stops after that many semantic errors, -p checks the properties against a schema file
+ * instead of the properties of ICSS. With -o the CSS files mirror the directories of the inputs below the directory
+ * or glob they were found by.
+ */
+public class BatchCompiler {
+
+    private static final String ICSS_EXTENSION = ".icss";
+    private static final String CSS_EXTENSION = ".css";
+    private static final String USAGE = "Usage: BatchCompiler [-o outputDirectory] [-j threads] [-m maxErrors] [-p propertySchema] (file | directory | glob)...";
+    //The largest parallelism a ForkJoinPool accepts
+    private static final int MAX_PARALLELISM = 0x7fff;
+
+    private final Path outputDirectory;
+    private final int parallelism;
+    private int maxSemanticErrors = ErrorCollector.UNLIMITED;
+    private PropertySchema propertySchema = PropertySchema.getDefault();
+
+    public BatchCompiler(Path outputDirectory, int parallelism) {
+        this.outputDirectory = outputDirectory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Stops checking a file after this many semantic errors, see {@link Pipeline#setMaxSemanticErrors(int)}.
+     */
+    public void setMaxSemanticErrors(int maxSemanticErrors) {
+        this.maxSemanticErrors = maxSemanticErrors;
+    }
+
+    public void setPropertySchema(PropertySchema propertySchema) {
+        this.propertySchema = propertySchema;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the command line and returns the exit status: 0 when all files compiled, 1 when a file failed, 2 for a usage error.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        Path outputDirectory = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int maxSemanticErrors = ErrorCollector.UNLIMITED;
+        PropertySchema propertySchema = PropertySchema.getDefault();
+        List<String> inputs = new ArrayList<>();
+        Map<Path, Path> files;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-o") && i + 1 < args.length) {
+                    outputDirectory = Paths.get(args[++i]);
+                } else if (args[i].equals("-j") && i + 1 < args.length) {
+                    parallelism = parseOption("-j", args[++i], 1, MAX_PARALLELISM);
+                } else if (args[i].equals("-m") && i + 1 < args.length) {
+                    maxSemanticErrors = parseOption("-m", args[++i], 0, Integer.MAX_VALUE);
+                } else if (args[i].equals("-p") && i + 1 < args.length) {
+                    propertySchema = PropertySchema.load(Paths.get(args[++i]));
+                } else {
+                    inputs.add(args[i]);
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No input files");
+            }
+            files = resolveInputsByRelativePath(inputs);
+            if (outputDirectory != null) {
+                checkOutputsDiffer(files);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        BatchCompiler compiler = new BatchCompiler(outputDirectory, parallelism);
+        compiler.setMaxSemanticErrors(maxSemanticErrors);
+        compiler.setPropertySchema(propertySchema);
+        Summary summary = compiler.compile(files, err);
+        out.println(summary);
+
+        return summary.failed > 0 ? 1 : 0;
+    }
+
+    private static int parseOption(String option, String value, int min, int max) {
+        try {
+            final int number = Integer.parseInt(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below like a number out of range
+        }
+        throw new IllegalArgumentException(String.format("%s expects a number from %d to %d, found: %s", option, min, max, value));
+    }
+
+    /**
+     * Expands the command line arguments to a sorted list of .icss files.
+     * An argument is either a file, a directory (searched recursively) or a glob such as {@code styles/**.icss}.
+     */
+    public static List<Path> resolveInputs(List<String> arguments) throws IOException {
+        return new ArrayList<>(resolveInputsByRelativePath(arguments).keySet());
+    }
+
+    /**
+     * Like {@link #resolveInputs(List)}, with the path of every file relative to the argument it was found by:
+     * the directory, or the directory a glob starts in. A file that is an argument itself is just its file name.
+     * The output directory mirrors these paths.
+     */
+    public static Map<Path, Path> resolveInputsByRelativePath(List<String> arguments) throws IOException {
+        Map<Path, Path> files = new LinkedHashMap<>();
+
+        for (String argument : arguments) {
+            final boolean isGlob = argument.contains("*") || argument.contains("?") || argument.contains("{");
+
+            if (isGlob) {
+                final Path root = globRoot(argument);
+                for (Path file : expandGlob(argument)) {
+                    files.putIfAbsent(file, root.relativize(file));
+                }
+            } else {
+                Path path = Paths.get(argument);
+                if (Files.isDirectory(path)) {
+                    for (Path file : findIcssFiles(path)) {
+                        files.putIfAbsent(file, path.relativize(file));
+                    }
+                } else {
+                    files.putIfAbsent(path, path.getFileName());
+                }
+            }
+        }
+
+        return files;
+    }
+
+    private static List<Path> findIcssFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(ICSS_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> expandGlob(String glob) throws IOException {
+        String normalizedGlob = glob.replace('\\', '/');
+        Path root = globRoot(glob);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalizedGlob);
+        final boolean relativeToCurrentDirectory = normalizedGlob.lastIndexOf('/', wildcardIndex(normalizedGlob)) < 0;
+
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(relativeToCurrentDirectory ? root.relativize(p) : p))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /*
+     The longest directory prefix of the glob that does not contain wildcards, the directory the glob is walked from.
+     */
+    private static Path globRoot(String glob) {
+        String normalizedGlob = glob.replace('\\', '/');
+        int lastSeparator = normalizedGlob.lastIndexOf('/', wildcardIndex(normalizedGlob));
+        return lastSeparator < 0 ? Paths.get(".") : Paths.get(normalizedGlob.substring(0, lastSeparator + 1));
+    }
+
+    private static int wildcardIndex(String glob) {
+        int firstWildcard = glob.length();
+        for (char wildcard : new char[]{'*', '?', '{', '['}) {
+            int index = glob.indexOf(wildcard);
+            if (index >= 0) {
+                firstWildcard = Math.min(firstWildcard, index);
+            }
+        }
+        return firstWildcard;
+    }
+
+    /**
+     * Compiles all files and writes the generated CSS. Errors are reported to the given stream.
+     * The output directory gets the CSS of every file under its file name.
+     */
+    public Summary compile(List<Path> files, PrintStream errorStream) {
+        Map<Path, Path> relativePaths = new LinkedHashMap<>();
+        for (Path file : files) {
+            relativePaths.put(file, file.getFileName());
+        }
+        return compile(relativePaths, errorStream);
+    }
+
+    /**
+     * Compiles the files, the output directory gets the CSS of every file under its relative path.
+     * Two files with the same relative path would overwrite each other's CSS, they throw an {@link IllegalArgumentException}.
+     */
+    public Summary compile(Map<Path, Path> files, PrintStream errorStream) {
+        if (outputDirectory != null) {
+            checkOutputsDiffer(files);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+
+        try {
+            List<Future<Result>> results = new ArrayList<>();
+            for (Map.Entry<Path, Path> file : files.entrySet()) {
+                results.add(pool.submit(() -> compileFile(file.getKey(), file.getValue())));
+            }
+
+            //Collect in submission order so the error output is deterministic
+            for (Future<Result> future : results) {
+                Result result = future.get();
+                summary.add(result);
+                for (String error : result.errors) {
+                    errorStream.println(result.file + ": " + error);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private static void checkOutputsDiffer(Map<Path, Path> files) {
+        Map<Path, Path> filesByOutput = new HashMap<>();
+        for (Map.Entry<Path, Path> file : files.entrySet()) {
+            final Path other = filesByOutput.putIfAbsent(outputName(file.getValue()), file.getKey());
+            if (other != null) {
+                throw new IllegalArgumentException(String.format("%s and %s would both be written to %s",
+                        other, file.getKey(), outputName(file.getValue())));
+            }
+        }
+    }
+
+    private Result compileFile(Path file, Path relativePath) {
+        Result result = new Result(file);
+        Pipeline pipeline = new Pipeline();
+        pipeline.setReuseParser(true);
+        pipeline.setTwoStagePrediction(true);
+        pipeline.setBuildASTWhileParsing(true);
+        pipeline.setUseScanner(true);
+        pipeline.setMaxSemanticErrors(maxSemanticErrors);
+        pipeline.setPropertySchema(propertySchema);
+
+        try {
+            result.bytes = Files.size(file);
+
+            pipeline.parseFile(file);
+            result.fullContextFallback = pipeline.isFullContextFallbackUsed();
+            if (!pipeline.isParsed()) {
+                //Only a file with errors pays for the slower parse that reports all of them
+                pipeline.setErrorRecovery(true);
+                pipeline.parseFile(file);
+            }
+            if (pipeline.isParsed() && pipeline.check()) {
+                pipeline.transform();
+                Files.writeString(outputFile(file, relativePath), pipeline.generate());
+            }
+            result.errors.addAll(pipeline.getErrors());
+        } catch (IOException | RuntimeException e) {
+            //Any other exception only fails this file, the rest of the batch is still compiled
+            result.errors.add(e.toString());
+        }
+
+        return result;
+    }
+
+    private Path outputFile(Path input, Path relativePath) throws IOException {
+        if (outputDirectory == null) {
+            return input.resolveSibling(outputName(input.getFileName()));
+        }
+
+        Path output = outputDirectory.resolve(outputName(relativePath));
+        Files.createDirectories(output.getParent());
+        return output;
+    }
+
+    /*
+     The path with the .icss extension of its file name replaced by .css.
+     */
+    private static Path outputName(Path path) {
+        String fileName = path.getFileName().toString();
+        if (fileName.endsWith(ICSS_EXTENSION)) {
+            fileName = fileName.substring(0, fileName.length() - ICSS_EXTENSION.length());
+        }
+        return path.resolveSibling(fileName + CSS_EXTENSION);
+    }
+
+    private static class Result {
+        private final Path file;
+        private final List<String> errors = new ArrayList<>();
+        private long bytes;
+        private boolean fullContextFallback;
+
+        private Result(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Totals of a batch run.
+     */
+    public static class Summary {
+        public int compiled;
+        public int failed;
+        public int fullContextFallbacks;
+        public long bytes;
+        public long elapsedNanos;
+
+        private void add(Result result) {
+            if (result.errors.isEmpty()) {
+                compiled++;
+            } else {
+                failed++;
+            }
+            if (result.fullContextFallback) {
+                fullContextFallbacks++;
+            }
+            bytes += result.bytes;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            final int files = compiled + failed;
+
+            return String.format("Compiled %d of %d files in %.3f s (%.1f files/s, %.2f MB/s), %d needed the full LL fallback",
+                    compiled, files, seconds, files / seconds, bytes / 1e6 / seconds, fullContextFallbacks);
+        }
+    }
+}
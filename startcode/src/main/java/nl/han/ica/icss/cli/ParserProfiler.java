@@ -0,0 +1,83 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.ICSSParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.DecisionState;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parses ICSS files with ANTLR's profiling enabled and prints how much work every grammar decision took.
+ * Useful to see the effect of grammar changes on the prediction cost.
+ * <p>
+ * Usage: {@code ParserProfiler (file | directory | glob)...}
+ */
+public class ParserProfiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ParserProfiler (file | directory | glob)...");
+            System.exit(2);
+        }
+
+        profile(BatchCompiler.resolveInputs(Arrays.asList(args)), System.out);
+    }
+
+    /**
+     * Parses all files with one profiling parser and prints the totals per decision, the most expensive first.
+     */
+    public static void profile(List<Path> files, PrintStream out) throws IOException {
+        ICSSLexer lexer = new ICSSLexer(null);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        ICSSParser parser = new ICSSParser(tokens);
+        parser.removeErrorListeners();
+        parser.setProfile(true);
+
+        long start = System.nanoTime();
+        for (Path file : files) {
+            lexer.setInputStream(CharStreams.fromPath(file));
+            tokens.setTokenSource(lexer);
+            parser.setTokenStream(tokens);
+            parser.stylesheet();
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+
+        DecisionInfo[] decisions = parser.getParseInfo().getDecisionInfo();
+        Arrays.sort(decisions, Comparator.comparingLong((DecisionInfo decision) -> decision.timeInPrediction).reversed());
+
+        out.printf("%-8s %-22s %10s %10s %10s %8s %10s %8s %6s%n",
+                "decision", "rule", "calls", "time (ms)", "SLL look", "SLL max", "LL falls", "LL look", "ambig");
+
+        long invocations = 0, time = 0, sllLook = 0, llFallbacks = 0, llLook = 0, ambiguities = 0;
+        for (DecisionInfo decision : decisions) {
+            if (decision.invocations == 0) {
+                continue;
+            }
+
+            DecisionState state = parser.getATN().getDecisionState(decision.decision);
+            out.printf("%-8d %-22s %10d %10.2f %10d %8d %10d %8d %6d%n",
+                    decision.decision, parser.getRuleNames()[state.ruleIndex], decision.invocations,
+                    decision.timeInPrediction / 1e6, decision.SLL_TotalLook, decision.SLL_MaxLook,
+                    decision.LL_Fallback, decision.LL_TotalLook, decision.ambiguities.size());
+
+            invocations += decision.invocations;
+            time += decision.timeInPrediction;
+            sllLook += decision.SLL_TotalLook;
+            llFallbacks += decision.LL_Fallback;
+            llLook += decision.LL_TotalLook;
+            ambiguities += decision.ambiguities.size();
+        }
+
+        out.printf("%-31s %10d %10.2f %10d %8s %10d %8d %6d%n",
+                "total", invocations, time / 1e6, sllLook, "", llFallbacks, llLook, ambiguities);
+        out.printf("Parsed %d files in %.1f ms%n", files.size(), elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,107 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.transforms.EvalExpressions;
+import nl.han.ica.icss.transforms.RemoveIf;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the passes after the parser on ICSS files many times and prints the best and median time of every pass.
+ * Useful to see the effect of a change to the checker, the transforms or the generator.
+ * <p>
+ * Usage: {@code PassProfiler [-n runs] (file | directory | glob)...}
+ */
+public class PassProfiler {
+
+    private static final String USAGE = "Usage: PassProfiler [-n runs] (file | directory | glob)...";
+    private static final String[] PASSES = {"check", "evaluate", "remove if", "generate"};
+
+    public static void main(String[] args) throws IOException {
+        int runs = 50;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-n") && i + 1 < args.length) {
+                    runs = Integer.parseInt(args[++i]);
+                } else {
+                    inputs.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (inputs.isEmpty() || runs < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        profile(BatchCompiler.resolveInputs(inputs), runs, System.out);
+    }
+
+    /**
+     * Parses the files again for every run and times the passes on the fresh ASTs, the parse itself is not timed.
+     * Files with errors are only parsed and checked once, they have nothing to transform.
+     */
+    public static void profile(List<Path> files, int runs, PrintStream out) throws IOException {
+        final long[][] nanos = new long[PASSES.length][runs];
+        final List<Path> checkedFiles = new ArrayList<>();
+
+        for (Path file : files) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.parseFile(file);
+            if (pipeline.isParsed() && pipeline.check()) {
+                checkedFiles.add(file);
+            }
+        }
+
+        for (int run = 0; run < runs; run++) {
+            for (Path file : checkedFiles) {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setReuseParser(true);
+                pipeline.setTwoStagePrediction(true);
+                pipeline.parseFile(file);
+                final AST ast = pipeline.getAST();
+                //Collects the garbage of the parse, so it is not collected during one of the passes
+                System.gc();
+
+                long start = System.nanoTime();
+                new Checker().check(ast);
+                long end = System.nanoTime();
+                nanos[0][run] += end - start;
+
+                start = end;
+                new EvalExpressions().apply(ast);
+                end = System.nanoTime();
+                nanos[1][run] += end - start;
+
+                start = end;
+                new RemoveIf().apply(ast);
+                end = System.nanoTime();
+                nanos[2][run] += end - start;
+
+                start = end;
+                new Generator().generate(ast);
+                end = System.nanoTime();
+                nanos[3][run] += end - start;
+            }
+        }
+
+        out.printf("%-10s %10s %12s%n", "pass", "best (ms)", "median (ms)");
+        for (int i = 0; i < PASSES.length; i++) {
+            Arrays.sort(nanos[i]);
+            out.printf("%-10s %10.2f %12.2f%n", PASSES[i], nanos[i][0] / 1e6, nanos[i][runs / 2] / 1e6);
+        }
+        out.printf("Ran %d times over %d of %d files%n", runs, checkedFiles.size(), files.size());
+    }
+}
@@ -3,31 +3,135 @@ package nl.han.ica.icss.generator;
 
 import nl.han.ica.icss.ast.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Generator {
     StringBuilder css = new StringBuilder();
+    private String newLine;
+    private boolean parallel = false;
+
+    //Only the stylerules of the stylesheet and the declarations of a stylerule produce CSS
+    private final ASTVisitor<Void> stylerules = new ASTVisitor<>() {
+        @Override
+        public Void visitStylerule(Stylerule stylerule) {
+            generateStyleRule(stylerule);
+            return null;
+        }
+    };
+    private final ASTVisitor<Void> declarations = new ASTVisitor<>() {
+        @Override
+        public Void visitDeclaration(Declaration declaration) {
+            generateDeclaration(declaration);
+            return null;
+        }
+    };
+
+    /**
+     * When enabled, the style rules of an AST are generated concurrently, each into a string of its own.
+     * The strings are joined in the order of the rules, the CSS is the same as without it.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
     public String generate(AST ast) {
-        List<ASTNode> stylesheetChildren = ast.root.getChildren();
+        if (parallel) {
+            return generateInParallel(ast);
+        }
+
+        final int childCount = ast.root.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            ast.root.getChild(i).accept(stylerules);
+        }
+
+        return css.toString();
+    }
+
+    private String generateInParallel(AST ast) {
+        final List<GeneratedRule> generatedRules = new ArrayList<>();
+        final int childCount = ast.root.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (ast.root.getChild(i) instanceof Stylerule) {
+                generatedRules.add(new GeneratedRule((Stylerule) ast.root.getChild(i)));
+            }
+        }
 
-        stylesheetChildren.stream()
-                .filter(c -> c instanceof Stylerule)
-                .map(c -> (Stylerule) c)
-                .forEach(this::generateStyleRule);
+        RuleTasks.run(generatedRules, () -> new Generator()::generateRule);
+
+        for (GeneratedRule generatedRule : generatedRules) {
+            css.append(generatedRule.css);
+        }
+        return css.toString();
+    }
+
+    private void generateRule(GeneratedRule generatedRule) {
+        css.setLength(0);
+        generateStyleRule(generatedRule.rule);
+        generatedRule.css = css.toString();
+    }
+
+    /*
+     A style rule of a parallel generation and the CSS generated for it.
+     */
+    private static class GeneratedRule {
+        final Stylerule rule;
+        String css;
+
+        GeneratedRule(Stylerule rule) {
+            this.rule = rule;
+        }
+    }
+
+    /**
+     * Generates the same CSS from the compact form of an AST. Only the value of each declaration is expanded into objects.
+     */
+    public String generate(CompactAST ast) {
+        for (int child = ast.getFirstChild(ast.getRoot()); child != CompactAST.NONE; child = ast.getNextSibling(child)) {
+            if (ast.getKind(child) == CompactAST.STYLERULE) {
+                generateStyleRule(ast, child);
+            }
+        }
 
         return css.toString();
     }
 
+    private void generateStyleRule(CompactAST ast, int stylerule) {
+        //The selectors come first, like in the object form only the first one is used
+        final String selector = ast.getName(ast.getFirstChild(stylerule));
+
+        css.append(selector)
+                .append(" {")
+                .append(System.lineSeparator());
+
+        String newLine = "";
+        for (int child = ast.getFirstChild(stylerule); child != CompactAST.NONE; child = ast.getNextSibling(child)) {
+            if (ast.getKind(child) == CompactAST.DECLARATION) {
+                final int expression = ast.getFirstChild(child);
+                css.append(newLine)
+                        .append("  ")
+                        .append(ast.getName(child))
+                        .append(": ")
+                        .append(expression == CompactAST.NONE ? null : ast.toASTNode(expression))
+                        .append(";");
+                newLine = System.lineSeparator();
+            }
+        }
+
+        css.append(System.lineSeparator())
+                .append("}")
+                .append(System.lineSeparator())
+                .append(System.lineSeparator());
+    }
+
     private void generateStyleRule(Stylerule stylerule) {
         final String selector = stylerule.selectors.get(0).toString();
-        List<ASTNode> children = stylerule.getChildren();
 
         css.append(selector)
                 .append(" {")
                 .append(System.lineSeparator());
 
-        generateDeclarations(children);
+        generateDeclarations(stylerule);
 
         css.append(System.lineSeparator())
                 .append("}")
@@ -35,22 +139,25 @@ public class Generator {
                 .append(System.lineSeparator());
     }
 
-    private void generateDeclarations(List<ASTNode> children) {
-        String newLine = "";
+    private void generateDeclarations(Stylerule stylerule) {
+        newLine = "";
 
-        for (ASTNode child : children) {
-            if (child instanceof Declaration) {
-                final String propertyName = ((Declaration) child).property.name;
-                final Expression expression = ((Declaration) child).expression;
-                css.append(newLine)
-                        .append("  ")
-                        .append(propertyName)
-                        .append(": ")
-                        .append(expression)
-                        .append(";");
-                newLine = System.lineSeparator();
-            }
+        final int childCount = stylerule.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            stylerule.getChild(i).accept(declarations);
         }
     }
 
+    private void generateDeclaration(Declaration declaration) {
+        final String propertyName = declaration.property.name;
+        final Expression expression = declaration.expression;
+        css.append(newLine)
+                .append("  ")
+                .append(propertyName)
+                .append(": ")
+                .append(expression)
+                .append(";");
+        newLine = System.lineSeparator();
+    }
+
 }
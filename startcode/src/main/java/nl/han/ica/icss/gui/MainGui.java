@@ -51,6 +51,7 @@ public class MainGui extends Application {
     public void start(Stage stage) {
         //Setup pipeline
         pipeline = new Pipeline();
+        pipeline.setErrorRecovery(true);
 
         //Setup UI
         stage.setTitle(title);
@@ -0,0 +1,621 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds the ICSS Abstract Syntax Tree while the parser runs, so no parse tree has to be kept.
+ * Register it with {@code addParseListener} on a parser that has {@code setBuildParseTree(false)}.
+ * <p>
+ * Every rule pushes its node on a value stack when the parser exits it; parent rules pop the nodes they consist of.
+ * Rules with a variable amount of children (stylesheet, stylerule, if and else) mark the stack height on entry.
+ * Variable assignments and values mark it as well, so an operand that went missing in a syntax error is not taken from
+ * the statement around it, like the listener does.
+ * Literals are created from the token type, the token text is only used for the value.
+ * In that parse mode contexts only contain their own tokens, which is all the builder looks at.
+ */
+public class ASTBuilder extends ICSSBaseListener {
+
+    private final TokenStream tokens;
+
+    private AST ast;
+    private final ArrayList<ASTNode> values = new ArrayList<>();
+    private int[] marks = new int[16];
+    private int depth;
+    private String failure;
+    //The calculations of the operands of the boolean expressions that are parsed, null for an operand that has none.
+    //Contexts do not keep their child contexts in this parse mode, so the builder keeps them until the value is validated
+    private ICSSParser.CalculationContext[] operandCalculations = new ICSSParser.CalculationContext[8];
+    private int operandCount;
+    //The table names are interned in, null gives every AST a table of its own
+    private SymbolTable symbols;
+
+    public ASTBuilder(TokenStream tokens) {
+        this.tokens = tokens;
+        reset();
+    }
+
+    /**
+     * Clears the accumulated state so the builder can be used for another parse.
+     */
+    public void reset() {
+        ast = symbols != null ? new AST(symbols) : new AST();
+        values.clear();
+        depth = 0;
+        failure = null;
+        Arrays.fill(operandCalculations, null);
+        operandCount = 0;
+    }
+
+    /**
+     * Interns the names of the next ASTs in the given table, see {@link ASTListener#setSymbolTable(SymbolTable)}.
+     */
+    public void setSymbolTable(SymbolTable symbols) {
+        this.symbols = symbols;
+        reset();
+    }
+
+    public AST getAST() {
+        return ast;
+    }
+
+    /**
+     * The reason the input could not be turned into an AST, or null when building succeeded.
+     * The builder stops at the first failure but lets the parser finish so all syntax errors are still reported.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
+        Stylesheet stylesheet = new Stylesheet();
+        popChildrenInto(stylesheet);
+
+        if (failure == null) {
+            ast.setRoot(stylesheet);
+        }
+    }
+
+    @Override
+    public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitStylerule(ICSSParser.StyleruleContext ctx) {
+        push(popChildrenInto(new Stylerule()));
+    }
+
+    @Override
+    public void enterIfClause(ICSSParser.IfClauseContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitIfClause(ICSSParser.IfClauseContext ctx) {
+        push(popChildrenInto(new IfClause()));
+    }
+
+    @Override
+    public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
+        push(popChildrenInto(new ElseClause()));
+    }
+
+    @Override
+    public void exitTagSelector(ICSSParser.TagSelectorContext ctx) {
+        push(new TagSelector(internName(ctx.getStart().getText())));
+    }
+
+    @Override
+    public void exitClassSelector(ICSSParser.ClassSelectorContext ctx) {
+        push(new ClassSelector(internName(ctx.getStart().getText())));
+    }
+
+    @Override
+    public void exitIdSelector(ICSSParser.IdSelectorContext ctx) {
+        push(new IdSelector(internName(ctx.getStart().getText())));
+    }
+
+    @Override
+    public void exitPropertyIdentifier(ICSSParser.PropertyIdentifierContext ctx) {
+        final int symbolId = ast.symbols.intern(ctx.getStart().getText());
+        push(new PropertyName(ast.symbols.getName(symbolId), symbolId));
+    }
+
+    @Override
+    public void exitStyleDeclaration(ICSSParser.StyleDeclarationContext ctx) {
+        Declaration declaration = new Declaration();
+        declaration.expression = pop(Expression.class);
+        declaration.property = pop(PropertyName.class);
+
+        push(declaration);
+    }
+
+    @Override
+    public void exitVariableIdentifier(ICSSParser.VariableIdentifierContext ctx) {
+        push(variableReference(ctx.getStart().getText()));
+    }
+
+    @Override
+    public void exitVariableReference(ICSSParser.VariableReferenceContext ctx) {
+        push(variableReference(ctx.getStart().getText()));
+    }
+
+    @Override
+    public void enterVariableDeclaration(ICSSParser.VariableDeclarationContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitVariableDeclaration(ICSSParser.VariableDeclarationContext ctx) {
+        push(popChildrenInto(new VariableAssignment()));
+    }
+
+    @Override
+    public void exitHardcodedValue(ICSSParser.HardcodedValueContext ctx) {
+        push(literal(ctx.getStart()));
+    }
+
+    @Override
+    public void exitCalculation(ICSSParser.CalculationContext ctx) {
+        final Token operator = firstToken(ctx);
+
+        //The outer calculation of a left recursion exits last
+        if (ctx.getParent() instanceof ICSSParser.BooleanExpressionContext) {
+            operandCalculations[operandCount] = ctx;
+        }
+
+        if (operator != null && !isIncomplete(ctx)) {
+            pushOperation(operator.getType() == ICSSParser.PLUS ? new AddOperation() : new SubtractOperation());
+        }
+    }
+
+    @Override
+    public void exitProduct(ICSSParser.ProductContext ctx) {
+        if (firstToken(ctx) != null && !isIncomplete(ctx)) {
+            pushOperation(new MultiplyOperation());
+        }
+    }
+
+    @Override
+    public void enterVariableValue(ICSSParser.VariableValueContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitVariableValue(ICSSParser.VariableValueContext ctx) {
+        validateBooleanValue(peek(), operandCalculation(0), true);
+        pushValue();
+    }
+
+    @Override
+    public void enterPropertyValue(ICSSParser.PropertyValueContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitPropertyValue(ICSSParser.PropertyValueContext ctx) {
+        pushValue();
+    }
+
+    @Override
+    public void enterCondition(ICSSParser.ConditionContext ctx) {
+        mark();
+    }
+
+    @Override
+    public void exitCondition(ICSSParser.ConditionContext ctx) {
+        validateBooleanValue(peek(), operandCalculation(0), false);
+        pushValue();
+    }
+
+    @Override
+    public void enterBooleanExpressions(ICSSParser.BooleanExpressionsContext ctx) {
+        operandCount = 0;
+    }
+
+    @Override
+    public void exitBooleanExpressions(ICSSParser.BooleanExpressionsContext ctx) {
+        //The operands are no children in this parse mode, only the operators between them are
+        final int operatorCount = ctx.getChildCount();
+
+        if (operatorCount == 0 || isIncomplete(ctx)) {
+            return;
+        }
+
+        Expression[] operands = new Expression[operatorCount + 1];
+        for (int i = operatorCount; i >= 0; i--) {
+            operands[i] = pop(Expression.class);
+
+            if (operands[i] == null) {
+                //An operand went missing in a syntax error, the ones found are left for the value
+                for (int j = i + 1; j <= operatorCount; j++) {
+                    push(operands[j]);
+                }
+                return;
+            }
+        }
+
+        //An operand that is no boolean literal is compared to the next operand first, when a comparison follows it
+        //and the next operand is negated at most once
+        ArrayList<Expression> terms = new ArrayList<>();
+        ArrayList<ComparisonOperator> operators = new ArrayList<>();
+        for (int i = 0; i <= operatorCount; i++) {
+            ComparisonOperator operator = i < operatorCount ? operatorAfter(ctx, i) : null;
+
+            if (isComparison(operator) && !isBooleanLiteral(operands[i]) && !isDoubleNegation(operands[i + 1])) {
+                terms.add(comparison(operands[i], operator, operands[i + 1]));
+                i++;
+                operator = i < operatorCount ? operatorAfter(ctx, i) : null;
+            } else {
+                validateBooleanOperand(operands[i], i);
+                terms.add(operands[i]);
+            }
+
+            if (operator != null) {
+                operators.add(operator);
+            }
+        }
+
+        joinTerms(terms, operators, ComparisonOperator.AND);
+        joinTerms(terms, operators, ComparisonOperator.OR);
+        joinTerms(terms, operators, null);
+        push(terms.get(0));
+    }
+
+    @Override
+    public void enterBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
+        if (operandCount == operandCalculations.length) {
+            operandCalculations = Arrays.copyOf(operandCalculations, operandCount * 2);
+        }
+        operandCalculations[operandCount] = null;
+    }
+
+    @Override
+    public void exitBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
+        final int negations = ctx.NEGATION_OPERATOR().size();
+
+        if (operandCalculations[operandCount++] == null) {
+            fail("Incomplete expression");
+        }
+
+        if (negations > 2) {
+            fail("Not a valid boolean expression!");
+        }
+
+        if (isIncomplete(ctx) || !(peek() instanceof Expression)) {
+            return;
+        }
+
+        for (int i = 0; i < negations; i++) {
+            push(new BooleanExpression(true, pop(Expression.class)));
+        }
+    }
+
+    /*
+     An operand that went missing in a syntax error leaves the other one on the stack as it is.
+     */
+    private void pushOperation(Operation operation) {
+        final Expression rhs = pop(Expression.class);
+
+        if (rhs == null) {
+            return;
+        }
+        if (!(peek() instanceof Expression)) {
+            push(rhs);
+            return;
+        }
+        operation.rhs = rhs;
+        operation.lhs = pop(Expression.class);
+
+        push(operation);
+    }
+
+    /*
+     The parser leaves a rule it could not match with its exception set, or with the tokens it skipped as error nodes.
+     */
+    private boolean isIncomplete(ParserRuleContext ctx) {
+        if (ctx.exception != null) {
+            return true;
+        }
+
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(i) instanceof ErrorNode) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Expression comparison(Expression left, ComparisonOperator operator, Expression right) {
+        boolean isNegated = false;
+
+        //A negation in front of a comparison negates the whole comparison, a second one only the left side
+        if (isNegation(left)) {
+            isNegated = true;
+            left = ((BooleanExpression) left).getExpression();
+        }
+
+        return new BooleanComparison(isNegated, operator, left, right);
+    }
+
+    /*
+     Joins the terms on both sides of every operator of the level, from left to right.
+     The comparisons that are left join last, with null as level.
+     */
+    private void joinTerms(ArrayList<Expression> terms, ArrayList<ComparisonOperator> operators, ComparisonOperator level) {
+        int i = 0;
+
+        while (i < operators.size()) {
+            if (level == null || operators.get(i) == level) {
+                terms.set(i, new BooleanComparison(false, operators.remove(i), terms.get(i), terms.remove(i + 1)));
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private ComparisonOperator operatorAfter(ICSSParser.BooleanExpressionsContext ctx, int operand) {
+        return comparisonOperator(tokenOf(ctx.getChild(operand)));
+    }
+
+    /*
+     A value that is used as boolean can only be negated when it is a boolean literal or a variable.
+     The calculation of the operand the value starts with decides the error, without one the value is incomplete and rejected already.
+     */
+    private void validateBooleanValue(ASTNode value, ICSSParser.CalculationContext calculation, boolean isCalculationAllowed) {
+        if (calculation == null) {
+            return;
+        }
+
+        if (isNegation(value)) {
+            final Expression expression = ((BooleanExpression) value).getExpression();
+
+            if (expression instanceof Operation) {
+                rejectCalculationAsBooleanValue(calculation, true);
+            } else if (expression instanceof VariableReference) {
+                rejectUnrecognizableName(((VariableReference) expression).name);
+            } else if (!(expression instanceof BoolLiteral)) {
+                fail("Not a valid boolean expression!");
+            }
+        } else if (value instanceof Operation && !isCalculationAllowed) {
+            rejectCalculationAsBooleanValue(calculation, false);
+        }
+    }
+
+    /*
+     An operand of a logical operator, or of a comparison of whole conditions, is read as a value on its own.
+     */
+    private void validateBooleanOperand(Expression operand, int index) {
+        if (operand instanceof VariableReference) {
+            rejectUnrecognizableName(((VariableReference) operand).name);
+        }
+
+        validateBooleanValue(operand, operandCalculation(index), false);
+    }
+
+    /*
+     A calculation on its own is not a boolean value. The token types decide the error, the same way as in ASTListener:
+     a calculation that starts with a color is only rejected when it is negated, other calculations are unexpected
+     when they end with a size and unrecognizable otherwise.
+     */
+    private void rejectCalculationAsBooleanValue(ICSSParser.CalculationContext calculation, boolean isNegated) {
+        final Interval tokenInterval = Interval.of(calculation.getStart().getTokenIndex(), calculation.getStop().getTokenIndex());
+        final int last = calculation.getStop().getType();
+
+        if (calculation.getStart().getType() == ICSSParser.COLOR) {
+            if (isNegated) {
+                fail("Not a valid boolean expression!");
+            }
+        } else if (last == ICSSParser.PERCENTAGE || last == ICSSParser.PIXELSIZE) {
+            fail(String.format("Unexpected value: %s ", tokens.getText(tokenInterval)));
+        } else {
+            fail(String.format("Unrecognizable value: %s", tokens.getText(tokenInterval)));
+        }
+    }
+
+    private ICSSParser.CalculationContext operandCalculation(int index) {
+        return index < operandCount ? operandCalculations[index] : null;
+    }
+
+    /*
+     A value on its own is only recognized as variable when its name consists of letters, see ASTListener.
+     */
+    private void rejectUnrecognizableName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isLetter(name.charAt(i))) {
+                fail(String.format("Unrecognizable value: %s", name));
+                return;
+            }
+        }
+    }
+
+    private boolean isNegation(ASTNode node) {
+        return node instanceof BooleanExpression && ((BooleanExpression) node).isNegated();
+    }
+
+    /*
+     A boolean literal, negated at most once, is compared as a whole condition, like the result of a comparison.
+     */
+    private boolean isBooleanLiteral(Expression operand) {
+        return operand instanceof BoolLiteral || isNegation(operand) && ((BooleanExpression) operand).getExpression() instanceof BoolLiteral;
+    }
+
+    private boolean isDoubleNegation(Expression operand) {
+        return isNegation(operand) && isNegation(((BooleanExpression) operand).getExpression());
+    }
+
+    private boolean isComparison(ComparisonOperator operator) {
+        return operator != null && operator != ComparisonOperator.AND && operator != ComparisonOperator.OR;
+    }
+
+    private Expression literal(Token token) {
+        final String text = token.getText();
+
+        try {
+            switch (token.getType()) {
+                case ICSSParser.TRUE:
+                    return BoolLiteral.TRUE;
+                case ICSSParser.FALSE:
+                    return BoolLiteral.FALSE;
+                case ICSSParser.PIXELSIZE:
+                    return PixelLiteral.valueOf(text);
+                case ICSSParser.PERCENTAGE:
+                    return PercentageLiteral.valueOf(text);
+                case ICSSParser.SCALAR:
+                    return ScalarLiteral.valueOf(text);
+                case ICSSParser.COLOR:
+                    return ColorLiteral.valueOf(text);
+                default:
+                    //Only happens for tokens the error recovery put in place of a value
+                    return null;
+            }
+        } catch (NumberFormatException ex) {
+            fail(String.format("Unexpected value: %s ", text));
+            return null;
+        }
+    }
+
+    /*
+     The shared instance of the name in the symbol table of the AST.
+     */
+    private String internName(String name) {
+        return ast.symbols.getName(ast.symbols.intern(name));
+    }
+
+    private VariableReference variableReference(String name) {
+        final int symbolId = ast.symbols.intern(name);
+        return new VariableReference(ast.symbols.getName(symbolId), symbolId);
+    }
+
+    private ComparisonOperator comparisonOperator(Token token) {
+        switch (token.getType()) {
+            case ICSSParser.LT:
+                return ComparisonOperator.LT;
+            case ICSSParser.LET:
+                return ComparisonOperator.LET;
+            case ICSSParser.EQ:
+                return ComparisonOperator.EQ;
+            case ICSSParser.NQ:
+                return ComparisonOperator.NQ;
+            case ICSSParser.GET:
+                return ComparisonOperator.GET;
+            case ICSSParser.GT:
+                return ComparisonOperator.GT;
+            case ICSSParser.AND:
+                return ComparisonOperator.AND;
+            case ICSSParser.OR:
+                return ComparisonOperator.OR;
+            default:
+                return null;
+        }
+    }
+
+    private Token firstToken(ParserRuleContext ctx) {
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            final Token token = tokenOf(ctx.getChild(i));
+            if (token != null) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    private Token tokenOf(ParseTree child) {
+        return child instanceof TerminalNode ? ((TerminalNode) child).getSymbol() : null;
+    }
+
+    private void fail(String reason) {
+        if (failure == null) {
+            failure = reason;
+        }
+    }
+
+    private void push(ASTNode node) {
+        if (node != null && failure == null) {
+            values.add(node);
+        }
+    }
+
+    /*
+     The expected node can only be missing after a syntax error, the node is then left out like the listener does.
+     */
+    private <T extends ASTNode> T pop(Class<T> type) {
+        final int top = values.size() - 1;
+
+        if (top < currentMark() || !type.isInstance(values.get(top))) {
+            return null;
+        }
+
+        return type.cast(values.remove(top));
+    }
+
+    /*
+     Replaces the nodes of a value by the value, the last one. Before it are the operands of expressions that could not be built.
+     */
+    private void pushValue() {
+        final ASTNode value = peek();
+
+        values.subList(currentMark(), values.size()).clear();
+        depth--;
+        push(value);
+    }
+
+    private void mark() {
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        marks[depth++] = values.size();
+    }
+
+    private ASTNode peek() {
+        return values.size() > currentMark() ? values.get(values.size() - 1) : null;
+    }
+
+    private int currentMark() {
+        return depth == 0 ? 0 : marks[depth - 1];
+    }
+
+    private <T extends ASTNode> T popChildrenInto(T container) {
+        final int mark = currentMark();
+
+        for (int i = mark; i < values.size(); i++) {
+            container.addChild(values.get(i));
+        }
+        values.subList(mark, values.size()).clear();
+
+        if (depth > 0) {
+            depth--;
+        }
+
+        return container;
+    }
+}
@@ -0,0 +1,25 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Thrown when the input matches the grammar, but a value in it can not be turned into a valid AST node.
+ * It has no stack trace: it only abandons the current statement (or the whole parse), so filling one in would be wasted work.
+ * The errors with a fixed message are allocated once.
+ */
+final class ASTConstructionException extends ParseCancellationException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final ASTConstructionException INVALID_BOOLEAN_EXPRESSION = new ASTConstructionException("Not a valid boolean expression!");
+    static final ASTConstructionException INCOMPLETE_EXPRESSION = new ASTConstructionException("Incomplete expression");
+
+    ASTConstructionException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
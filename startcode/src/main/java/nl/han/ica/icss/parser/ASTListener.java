@@ -10,7 +10,11 @@ import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
-import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+
+import java.util.ArrayList;
 
 /**
  * This class extracts the ICSS Abstract Syntax Tree from the Antlr Parse tree.
@@ -23,15 +27,51 @@ public class ASTListener extends ICSSBaseListener {
     //Use this to keep track of the parent nodes when recursively traversing the ast
     private IHANStack<ASTNode> currentContainer;
 
+    //The table names are interned in, null gives every AST a table of its own
+    private SymbolTable symbols;
+
     public ASTListener() {
-        ast = new AST();
+        reset();
+    }
+
+    /**
+     * Clears the accumulated state so the listener can be used for another parse tree.
+     */
+    public void reset() {
+        ast = symbols != null ? new AST(symbols) : new AST();
         currentContainer = new HANStack<>();
     }
 
+    /**
+     * Interns the names of the next ASTs in the given table, so their nodes share the names and symbol ids of that table.
+     * With null every AST gets a new table. Also resets the listener.
+     */
+    public void setSymbolTable(SymbolTable symbols) {
+        this.symbols = symbols;
+        reset();
+    }
+
     public AST getAST() {
         return ast;
     }
 
+    /*
+     The node statements are added to at the moment, used to drop a statement that could not be completed.
+     */
+    ASTNode getCurrentContainer() {
+        return currentContainer.peek();
+    }
+
+    /*
+     Pops the unfinished nodes of an abandoned statement, until the given container is on top again.
+     Nodes are only added to their parent when they are finished, so the abandoned ones are not part of the AST.
+     */
+    void discardUntil(ASTNode container) {
+        while (currentContainer.peek() != container) {
+            currentContainer.pop();
+        }
+    }
+
     @Override
     public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
         currentContainer.push(new Stylesheet());
@@ -71,7 +111,8 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterPropertyIdentifier(ICSSParser.PropertyIdentifierContext ctx) {
-        PropertyName propertyName = new PropertyName(ctx.getChild(0).getText());
+        final int symbolId = ast.symbols.intern(ctx.getChild(0).getText());
+        PropertyName propertyName = new PropertyName(ast.symbols.getName(symbolId), symbolId);
         currentContainer.push(propertyName);
     }
 
@@ -114,22 +155,11 @@ public class ASTListener extends ICSSBaseListener {
         this.determineValueAndPushToContainer(value);
     }
 
-    @Override
-    public void exitHardcodedValue(ICSSParser.HardcodedValueContext ctx) {
-        if (isChildOfSubCalculation(ctx)) {
-            return;
-        }
-
-        ASTNode currentLiteral = currentContainer.pop();
-
-        currentContainer.peek().addChild(currentLiteral);
-    }
-
     @Override
     public void enterTagSelector(ICSSParser.TagSelectorContext ctx) {
         final String selectorText = ctx.getChild(0).getText();
 
-        currentContainer.push(new TagSelector(selectorText));
+        currentContainer.push(new TagSelector(internName(selectorText)));
     }
 
     @Override
@@ -144,7 +174,7 @@ public class ASTListener extends ICSSBaseListener {
     public void enterClassSelector(ICSSParser.ClassSelectorContext ctx) {
         final String selectorText = ctx.getChild(0).getText();
 
-        currentContainer.push(new ClassSelector(selectorText));
+        currentContainer.push(new ClassSelector(internName(selectorText)));
 
     }
 
@@ -159,7 +189,7 @@ public class ASTListener extends ICSSBaseListener {
     @Override
     public void enterIdSelector(ICSSParser.IdSelectorContext ctx) {
         final String selectorText = ctx.getChild(0).getText();
-        currentContainer.push(new IdSelector(selectorText));
+        currentContainer.push(new IdSelector(internName(selectorText)));
     }
 
     @Override
@@ -186,7 +216,7 @@ public class ASTListener extends ICSSBaseListener {
     public void enterVariableIdentifier(ICSSParser.VariableIdentifierContext ctx) {
         final String variableName = ctx.getChild(0).getText();
 
-        currentContainer.push(new VariableReference(variableName));
+        currentContainer.push(variableReference(variableName));
     }
 
     @Override
@@ -200,195 +230,278 @@ public class ASTListener extends ICSSBaseListener {
     public void enterVariableReference(ICSSParser.VariableReferenceContext ctx) {
         final String variableName = ctx.getChild(0).getText();
 
-        currentContainer.push(new VariableReference(variableName));
+        currentContainer.push(variableReference(variableName));
     }
 
     @Override
-    public void exitVariableReference(ICSSParser.VariableReferenceContext ctx) {
-        if (isChildOfSubCalculation(ctx)) {
-            return;
-        }
-
-        ASTNode currentVariableReference = currentContainer.pop();
+    public void exitVariableValue(ICSSParser.VariableValueContext ctx) {
+        validateBooleanValue(currentContainer.peek(), firstOperand(ctx.booleanExpressions()), true);
 
-        if (currentContainer.peek() instanceof BooleanComparison) {
-            currentContainer.push(currentVariableReference);
-        } else {
-            currentContainer.peek().addChild(currentVariableReference);
-        }
+        addValueToContainer();
     }
 
     @Override
-    public void enterVariableHardcodedValue(ICSSParser.VariableHardcodedValueContext ctx) {
-        final String variableValue = ctx.getChild(0).getText();
-        this.determineValueAndPushToContainer(variableValue);
+    public void exitPropertyValue(ICSSParser.PropertyValueContext ctx) {
+        addValueToContainer();
     }
 
     @Override
-    public void exitVariableHardcodedValue(ICSSParser.VariableHardcodedValueContext ctx) {
-        ASTNode currentVariableValue = currentContainer.pop();
+    public void exitCondition(ICSSParser.ConditionContext ctx) {
+        validateBooleanValue(currentContainer.peek(), firstOperand(ctx.booleanExpressions()), false);
 
-        currentContainer.peek().addChild(currentVariableValue);
+        addValueToContainer();
     }
 
     @Override
-    public void exitSubCalculation(ICSSParser.SubCalculationContext ctx) {
+    public void exitCalculation(ICSSParser.CalculationContext ctx) {
         final boolean isOperation = ctx.getChildCount() == 3;
 
-        if (isOperation) {
-            Operation operation = this.determineOperator(ctx.getChild(1).getText());
-
-            operation.rhs = (Expression) currentContainer.pop();
-            operation.lhs = (Expression) currentContainer.pop();
-
-            currentContainer.push(operation);
+        if (isOperation && !isIncomplete(ctx)) {
+            pushOperation(this.determineOperator(ctx.getChild(1).getText()));
         }
     }
 
     @Override
-    public void exitCalculation(ICSSParser.CalculationContext ctx) {
-        ASTNode parentOperation = currentContainer.pop();
-
-        currentContainer.peek().addChild(parentOperation);
-    }
-
-    @Override
-    public void enterBooleanExpressions(ICSSParser.BooleanExpressionsContext ctx) {
-        final boolean isBooleanComparison = ctx.getChildCount() == 3;
+    public void exitProduct(ICSSParser.ProductContext ctx) {
+        final boolean isOperation = ctx.getChildCount() == 3;
 
-        if (isBooleanComparison) {
-            currentContainer.push(new BooleanComparison(determineComparisonOperator(ctx.getChild(1).getText())));
+        if (isOperation && !isIncomplete(ctx)) {
+            pushOperation(this.determineOperator(ctx.getChild(1).getText()));
         }
     }
 
     @Override
     public void exitBooleanExpressions(ICSSParser.BooleanExpressionsContext ctx) {
-        ASTNode node = currentContainer.pop();
-        currentContainer.peek().addChild(node);
-    }
+        final int operatorCount = ctx.getChildCount() / 2;
 
-    @Override
-    public void enterBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
-        final boolean isNegated = ctx.getChildCount() == 2;
-        boolean isComparison;
-        
-        if (ctx.getChildCount() == 0) throw new ParseCancellationException("Incomplete expression");
-
-        if (isNegated) {
-            isComparison = ctx.getChild(1).getChildCount() >= 3 && ctx.getChild(1) instanceof ICSSParser.EqualityContext;
-        } else {
-            isComparison = ctx.getChild(0).getChildCount() >= 3 && ctx.getChild(0) instanceof ICSSParser.EqualityContext;
+        if (operatorCount == 0 || isIncomplete(ctx)) {
+            return;
         }
 
-        if (isComparison) {
-            constructBooleanComparison(ctx, isNegated);
-        } else {
-            constructBooleanExpression(ctx, isNegated);
+        Expression[] operands = new Expression[operatorCount + 1];
+        for (int i = operatorCount; i >= 0; i--) {
+            if (!(currentContainer.peek() instanceof Expression)) {
+                //An operand went missing in a syntax error, the ones found are left for addValueToContainer
+                for (int j = i + 1; j <= operatorCount; j++) {
+                    currentContainer.push(operands[j]);
+                }
+                return;
+            }
+            operands[i] = (Expression) currentContainer.pop();
         }
+
+        //An operand that is no boolean literal is compared to the next operand first, when a comparison follows it
+        //and the next operand is negated at most once
+        ArrayList<Expression> terms = new ArrayList<>();
+        ArrayList<ComparisonOperator> operators = new ArrayList<>();
+        for (int i = 0; i <= operatorCount; i++) {
+            ComparisonOperator operator = i < operatorCount ? operatorAfter(ctx, i) : null;
+
+            if (isComparison(operator) && !isBooleanLiteral(operands[i]) && !isDoubleNegation(operands[i + 1])) {
+                terms.add(comparison(operands[i], operator, operands[i + 1]));
+                i++;
+                operator = i < operatorCount ? operatorAfter(ctx, i) : null;
+            } else {
+                validateBooleanOperand(operands[i], ctx.booleanExpression(i));
+                terms.add(operands[i]);
+            }
+
+            if (operator != null) {
+                operators.add(operator);
+            }
+        }
+
+        joinTerms(terms, operators, ComparisonOperator.AND);
+        joinTerms(terms, operators, ComparisonOperator.OR);
+        joinTerms(terms, operators, null);
+        currentContainer.push(terms.get(0));
     }
 
     @Override
     public void exitBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
-        ASTNode right = currentContainer.pop();
-
-        if (currentContainer.peek() instanceof BooleanExpression
-                || currentContainer.peek() instanceof Literal
-                || currentContainer.peek() instanceof VariableReference
-                || currentContainer.peek() instanceof Operation) {
-            ASTNode left = currentContainer.pop();
-            currentContainer.peek().addChild(left);
-            currentContainer.peek().addChild(right);
+        final int negations = ctx.NEGATION_OPERATOR().size();
+
+        if (ctx.calculation() == null) throw ASTConstructionException.INCOMPLETE_EXPRESSION;
+
+        if (negations > 2)
+            throw ASTConstructionException.INVALID_BOOLEAN_EXPRESSION;
+
+        if (isIncomplete(ctx) || !(currentContainer.peek() instanceof Expression)) {
             return;
         }
 
-        currentContainer.push(right);
+        for (int i = 0; i < negations; i++) {
+            currentContainer.push(new BooleanExpression(true, (Expression) currentContainer.pop()));
+        }
     }
 
-    @Override
-    public void enterEquality(ICSSParser.EqualityContext ctx) {
-        if (ctx.getChildCount() < 3) return;
+    /*
+     After a syntax error the value can be missing, the container is then left without it.
+     The operands of an expression that could not be built are left on the stack as well, those are dropped.
+     */
+    private void addValueToContainer() {
+        if (currentContainer.peek() instanceof Expression) {
+            ASTNode value = currentContainer.pop();
 
-        BooleanComparison booleanComparison = (BooleanComparison) currentContainer.peek();
-        ComparisonOperator operator;
-        final boolean hasAtLeastOneNegation = ctx.getChildCount() > 3;
+            while (currentContainer.peek() instanceof Expression) {
+                currentContainer.pop();
+            }
+            currentContainer.peek().addChild(value);
+        }
+    }
 
-        if (hasAtLeastOneNegation) {
-            final boolean leftExpressionNegated = ctx.getChild(0).getText().equals("!");
+    /*
+     An operand that went missing in a syntax error leaves the other one on the stack as it is.
+     */
+    private void pushOperation(Operation operation) {
+        if (!(currentContainer.peek() instanceof Expression)) {
+            return;
+        }
+        Expression rhs = (Expression) currentContainer.pop();
 
-            if (leftExpressionNegated) {
-                operator = determineComparisonOperator(ctx.getChild(2).getText());
-            } else {
-                operator = determineComparisonOperator(ctx.getChild(1).getText());
+        if (!(currentContainer.peek() instanceof Expression)) {
+            currentContainer.push(rhs);
+            return;
+        }
+        operation.rhs = rhs;
+        operation.lhs = (Expression) currentContainer.pop();
+
+        currentContainer.push(operation);
+    }
+
+    /*
+     The parser leaves a rule it could not match with its exception set, or with the tokens it skipped as error nodes.
+     */
+    private boolean isIncomplete(ParserRuleContext ctx) {
+        if (ctx.exception != null) {
+            return true;
+        }
+
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(i) instanceof ErrorNode) {
+                return true;
             }
-        } else {
-            operator = determineComparisonOperator(ctx.getChild(1).getText());
         }
 
-        booleanComparison.setOperator(operator);
+        return false;
     }
 
-    @Override
-    public void exitEquality(ICSSParser.EqualityContext ctx) {
-        if (ctx.getChildCount() < 3) return;
+    /*
+     A value that is missing after a syntax error has no operand to validate.
+     */
+    private ICSSParser.BooleanExpressionContext firstOperand(ICSSParser.BooleanExpressionsContext ctx) {
+        return ctx != null ? ctx.booleanExpression(0) : null;
+    }
 
-        Expression right = (Expression) currentContainer.pop();
-        Expression left = (Expression) currentContainer.pop();
+    private Expression comparison(Expression left, ComparisonOperator operator, Expression right) {
+        boolean isNegated = false;
 
-        boolean leftNegated = ctx.getChild(0).getText().equals("!");
-        boolean rightNegated;
+        //A negation in front of a comparison negates the whole comparison, a second one only the left side
+        if (isNegation(left)) {
+            isNegated = true;
+            left = ((BooleanExpression) left).getExpression();
+        }
 
-        if (leftNegated) {
-            rightNegated = ctx.getChild(3).getText().equals("!");
-            currentContainer.push(new BooleanExpression(true, left));
-        } else {
-            rightNegated = ctx.getChild(2).getText().equals("!");
-            currentContainer.push(left);
+        return new BooleanComparison(isNegated, operator, left, right);
+    }
+
+    /*
+     Joins the terms on both sides of every operator of the level, from left to right.
+     The comparisons that are left join last, with null as level.
+     */
+    private void joinTerms(ArrayList<Expression> terms, ArrayList<ComparisonOperator> operators, ComparisonOperator level) {
+        int i = 0;
+
+        while (i < operators.size()) {
+            if (level == null || operators.get(i) == level) {
+                terms.set(i, new BooleanComparison(false, operators.remove(i), terms.get(i), terms.remove(i + 1)));
+            } else {
+                i++;
+            }
         }
+    }
 
-        if (rightNegated) {
-            currentContainer.push(new BooleanExpression(true, right));
-        } else {
-            currentContainer.push(right);
+    private ComparisonOperator operatorAfter(ICSSParser.BooleanExpressionsContext ctx, int operand) {
+        return determineComparisonOperator(ctx.getChild(2 * operand + 1).getText());
+    }
+
+    /*
+     A value that is used as boolean can only be negated when it is a boolean literal or a variable.
+     A calculation is no boolean value at all, the tokens of the calculation decide which error is given.
+     */
+    private void validateBooleanValue(ASTNode value, ICSSParser.BooleanExpressionContext operand, boolean isCalculationAllowed) {
+        if (operand == null || operand.calculation() == null) {
+            return;
+        }
+
+        if (isNegation(value)) {
+            Expression expression = ((BooleanExpression) value).getExpression();
+
+            if (expression instanceof Operation) {
+                rejectCalculationAsBooleanValue(operand.calculation(), true);
+            } else if (expression instanceof VariableReference) {
+                rejectUnrecognizableName(((VariableReference) expression).name);
+            } else if (!(expression instanceof BoolLiteral)) {
+                throw ASTConstructionException.INVALID_BOOLEAN_EXPRESSION;
+            }
+        } else if (value instanceof Operation && !isCalculationAllowed) {
+            rejectCalculationAsBooleanValue(operand.calculation(), false);
         }
     }
 
-    private void constructBooleanComparison(ICSSParser.BooleanExpressionContext ctx, boolean isNegated) {
-        if (ctx.getText().startsWith("!!!"))
-            throw new ParseCancellationException("Not a valid boolean expression!");
+    /*
+     An operand of a logical operator, or of a comparison of whole conditions, is read as a value on its own.
+     */
+    private void validateBooleanOperand(Expression operand, ICSSParser.BooleanExpressionContext ctx) {
+        if (operand instanceof VariableReference) {
+            rejectUnrecognizableName(((VariableReference) operand).name);
+        }
 
-        currentContainer.push(new BooleanComparison(isNegated));
+        validateBooleanValue(operand, ctx, false);
     }
 
-    private void constructBooleanExpression(ICSSParser.BooleanExpressionContext ctx, boolean isNegated) {
-        if (isNegated) {
-            constructNegatedBooleanExpression(ctx);
+    /*
+     A calculation that starts with a color is only rejected when it is negated.
+     Other calculations are unexpected when they end with a size and unrecognizable otherwise.
+     */
+    private void rejectCalculationAsBooleanValue(ICSSParser.CalculationContext calculation, boolean isNegated) {
+        final int last = calculation.getStop().getType();
+
+        if (calculation.getStart().getType() == ICSSParser.COLOR) {
+            if (isNegated)
+                throw ASTConstructionException.INVALID_BOOLEAN_EXPRESSION;
+        } else if (last == ICSSParser.PERCENTAGE || last == ICSSParser.PIXELSIZE) {
+            throw new ASTConstructionException(String.format("Unexpected value: %s ", calculation.getText()));
         } else {
-            constructBooleanExpression(ctx);
+            throw new ASTConstructionException(String.format("Unrecognizable value: %s", calculation.getText()));
         }
     }
 
-    private void constructBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
-        Expression expression;
-        expression = determineValue(ctx.getChild(0).getText());
-        if (expression instanceof BoolLiteral) {
-            currentContainer.push(expression);
-        }
+    /*
+     A value on its own is only recognized as variable when its name consists of letters.
+     */
+    private void rejectUnrecognizableName(String name) {
+        if (!isAllCharacters(name))
+            throw new ASTConstructionException(String.format("Unrecognizable value: %s", name));
     }
 
-    private void constructNegatedBooleanExpression(ICSSParser.BooleanExpressionContext ctx) {
-        Expression expression;
-        expression = determineValue(ctx.getChild(1).getText());
-        final boolean isInvalidExpression = !(expression instanceof BoolLiteral || expression instanceof VariableReference) || ctx.getText().startsWith("!!");
+    private boolean isNegation(ASTNode node) {
+        return node instanceof BooleanExpression && ((BooleanExpression) node).isNegated();
+    }
 
-        if (isInvalidExpression)
-            throw new ParseCancellationException("Not a valid boolean expression!");
+    /*
+     A boolean literal, negated at most once, is compared as a whole condition, like the result of a comparison.
+     */
+    private boolean isBooleanLiteral(Expression operand) {
+        return operand instanceof BoolLiteral || isNegation(operand) && ((BooleanExpression) operand).getExpression() instanceof BoolLiteral;
+    }
 
-        final boolean isNotVariableReference = !(expression instanceof VariableReference);
-        if (isNotVariableReference) {
-            currentContainer.push(new BooleanExpression(true, expression));
-        } else {
-            currentContainer.push(new BooleanExpression(true));
-        }
+    private boolean isDoubleNegation(Expression operand) {
+        return isNegation(operand) && isNegation(((BooleanExpression) operand).getExpression());
+    }
+
+    private boolean isComparison(ComparisonOperator operator) {
+        return operator != null && operator != ComparisonOperator.AND && operator != ComparisonOperator.OR;
     }
 
     private ComparisonOperator determineComparisonOperator(String operator) {
@@ -426,6 +539,18 @@ public class ASTListener extends ICSSBaseListener {
         throw new IllegalArgumentException("No matching operator found!");
     }
 
+    /*
+     The shared instance of the name in the symbol table of the AST.
+     */
+    private String internName(String name) {
+        return ast.symbols.getName(ast.symbols.intern(name));
+    }
+
+    private VariableReference variableReference(String name) {
+        final int symbolId = ast.symbols.intern(name);
+        return new VariableReference(ast.symbols.getName(symbolId), symbolId);
+    }
+
     private void determineValueAndPushToContainer(final String value) {
         currentContainer.push(determineValue(value));
     }
@@ -433,23 +558,23 @@ public class ASTListener extends ICSSBaseListener {
     private Expression determineValue(final String value) {
         try {
             if (value.startsWith("#")) {
-                return new ColorLiteral(value);
+                return ColorLiteral.valueOf(value);
             } else if (value.endsWith("%")) {
-                return new PercentageLiteral(value);
+                return PercentageLiteral.valueOf(value);
             } else if (value.endsWith("px")) {
-                return new PixelLiteral(value);
+                return PixelLiteral.valueOf(value);
             } else if (value.equals("TRUE") || value.equals("FALSE")) {
-                return new BoolLiteral(value);
+                return BoolLiteral.valueOf(value);
             } else if (isPositiveNumber(value)) {
-                return new ScalarLiteral(value);
+                return ScalarLiteral.valueOf(value);
             } else if (isAllCharacters(value)) {
-                return new VariableReference(value);
+                return variableReference(value);
             }
         } catch (Exception ex) {
-            throw new ParseCancellationException(String.format("Unexpected value: %s ", value));
+            throw new ASTConstructionException(String.format("Unexpected value: %s ", value));
         }
 
-        throw new ParseCancellationException(String.format("Unrecognizable value: %s", value));
+        throw new ASTConstructionException(String.format("Unrecognizable value: %s", value));
     }
 
     public boolean isAllCharacters(String value) {
@@ -474,12 +599,4 @@ public class ASTListener extends ICSSBaseListener {
         }
         return false;
     }
-
-    private boolean isChildOfSubCalculation(ICSSParser.VariableReferenceContext ctx) {
-        return ctx.parent.parent instanceof ICSSParser.SubCalculationContext;
-    }
-
-    private boolean isChildOfSubCalculation(ICSSParser.HardcodedValueContext ctx) {
-        return ctx.parent.parent instanceof ICSSParser.SubCalculationContext;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharStream that reads one byte per character straight from a ByteBuffer, e.g. a memory mapped file.
+ * ICSS only consists of ASCII characters, so no decoding step (and no copy of the whole input) is needed.
+ * Bytes outside the ASCII range are passed on as Latin-1 characters, which makes the lexer report them.
+ * Token text is only copied out of the buffer when it is requested.
+ */
+public class ByteBufferCharStream implements CharStream {
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final String name;
+    private int position;
+
+    public ByteBufferCharStream(ByteBuffer buffer, String name) {
+        this.buffer = buffer.slice();
+        this.size = this.buffer.limit();
+        this.name = name;
+        this.position = 0;
+    }
+
+    /**
+     * Gives direct access to the bytes of the input, positions are the same as the character indexes of this stream.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        final int start = Math.min(interval.a, size);
+        final int length = Math.min(interval.b - interval.a + 1, size - start);
+
+        if (length <= 0) {
+            return "";
+        }
+
+        byte[] text = new byte[length];
+        buffer.get(start, text);
+
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void consume() {
+        if (position == size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+
+        //LA(1) is the current character, LA(-1) the previous one
+        final int index = i > 0 ? position + i - 1 : position + i;
+
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+
+        return buffer.get(index) & 0xFF;
+    }
+
+    /*
+     The whole input is always available, so marks are not needed.
+     */
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        if (name == null || name.isEmpty()) {
+            return UNKNOWN_SOURCE_NAME;
+        }
+
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -0,0 +1,336 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hand-written replacement for the generated {@link ICSSLexer} that scans the bytes of a {@link ByteBufferCharStream}.
+ * It runs one transition table (a DFA of the lexer rules in ICSS.g4) instead of ANTLR's ATN simulation,
+ * and produces exactly the same tokens, positions and token recognition errors as the generated lexer.
+ * The keywords are scanned as identifiers and recognised afterwards, as they always win from an identifier of the same length.
+ */
+public class ICSSScanner implements TokenSource {
+
+    //One row of the transition table per state, indexed by the byte
+    private static final int ROW = 256;
+    private static final int NONE = -1;
+
+    //States of the transition table
+    private static final int START = 0;
+    private static final int LOWER_IDENT = 1;
+    private static final int CAPITAL_IDENT = 2;
+    private static final int DIGITS = 3;
+    private static final int DIGITS_P = 4;
+    private static final int PIXELSIZE = 5;
+    private static final int PERCENTAGE = 6;
+    //HASH_DIGITS + n is the state after '#' and n hexadecimal digits, the sixth one makes it a color
+    private static final int HASH = 7;
+    private static final int HASH_DIGITS = HASH;
+    private static final int ID_IDENT = 14;
+    private static final int DOT = 15;
+    private static final int CLASS_IDENT = 16;
+    private static final int WS = 17;
+    private static final int COLON = 18;
+    private static final int LT = 19;
+    private static final int GT = 20;
+    private static final int NEGATION = 21;
+    private static final int EQUALS = 22;
+    private static final int AMPERSAND = 23;
+    private static final int BAR = 24;
+    //Every token that cannot be extended gets a final state of its own
+    private static final int FINAL = 25;
+    private static final int STATES = FINAL + ICSSLexer.VOCABULARY.getMaxTokenType() + 1;
+
+    //The next state is stored as the offset of its row, which saves a multiplication per byte
+    private static final int[] TRANSITIONS = new int[STATES * ROW];
+    private static final int[] ACCEPTS = new int[STATES];
+
+    static {
+        Arrays.fill(TRANSITIONS, NONE);
+        Arrays.fill(ACCEPTS, Token.INVALID_TYPE);
+
+        final String lowerIdentifier = "abcdefghijklmnopqrstuvwxyz0123456789-";
+        final String capitalIdentifier = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_";
+        final String digits = "0123456789";
+        final String hexDigits = "0123456789abcdef";
+
+        transition(START, "abcdefghijklmnopqrstuvwxyz", LOWER_IDENT);
+        transition(LOWER_IDENT, lowerIdentifier, LOWER_IDENT);
+        accept(LOWER_IDENT, ICSSLexer.LOWER_IDENT);
+
+        transition(START, "ABCDEFGHIJKLMNOPQRSTUVWXYZ", CAPITAL_IDENT);
+        transition(CAPITAL_IDENT, capitalIdentifier, CAPITAL_IDENT);
+        accept(CAPITAL_IDENT, ICSSLexer.CAPITAL_IDENT);
+
+        transition(START, digits, DIGITS);
+        transition(DIGITS, digits, DIGITS);
+        transition(DIGITS, "p", DIGITS_P);
+        transition(DIGITS_P, "x", PIXELSIZE);
+        transition(DIGITS, "%", PERCENTAGE);
+        accept(DIGITS, ICSSLexer.SCALAR);
+        accept(PIXELSIZE, ICSSLexer.PIXELSIZE);
+        accept(PERCENTAGE, ICSSLexer.PERCENTAGE);
+
+        transition(START, "#", HASH);
+        for (int digit = 1; digit <= 6; digit++) {
+            transition(HASH_DIGITS + digit - 1, lowerIdentifier, ID_IDENT);
+            transition(HASH_DIGITS + digit - 1, hexDigits, HASH_DIGITS + digit);
+            accept(HASH_DIGITS + digit, ICSSLexer.ID_IDENT);
+        }
+        transition(HASH_DIGITS + 6, lowerIdentifier, ID_IDENT);
+        accept(HASH_DIGITS + 6, ICSSLexer.COLOR);
+        transition(ID_IDENT, lowerIdentifier, ID_IDENT);
+        accept(ID_IDENT, ICSSLexer.ID_IDENT);
+
+        transition(START, ".", DOT);
+        transition(DOT, lowerIdentifier, CLASS_IDENT);
+        transition(CLASS_IDENT, lowerIdentifier, CLASS_IDENT);
+        accept(CLASS_IDENT, ICSSLexer.CLASS_IDENT);
+
+        transition(START, " \t\r\n", WS);
+        transition(WS, " \t\r\n", WS);
+        accept(WS, ICSSLexer.WS);
+
+        transition(START, ":", COLON);
+        accept(COLON, ICSSLexer.COLON);
+        transition(COLON, "=", token(ICSSLexer.ASSIGNMENT_OPERATOR));
+
+        transition(START, "<", LT);
+        accept(LT, ICSSLexer.LT);
+        transition(LT, "=", token(ICSSLexer.LET));
+
+        transition(START, ">", GT);
+        accept(GT, ICSSLexer.GT);
+        transition(GT, "=", token(ICSSLexer.GET));
+
+        transition(START, "!", NEGATION);
+        accept(NEGATION, ICSSLexer.NEGATION_OPERATOR);
+        transition(NEGATION, "=", token(ICSSLexer.NQ));
+
+        transition(START, "=", EQUALS);
+        transition(EQUALS, "=", token(ICSSLexer.EQ));
+        transition(START, "&", AMPERSAND);
+        transition(AMPERSAND, "&", token(ICSSLexer.AND));
+        transition(START, "|", BAR);
+        transition(BAR, "|", token(ICSSLexer.OR));
+
+        transition(START, "[", token(ICSSLexer.BOX_BRACKET_OPEN));
+        transition(START, "]", token(ICSSLexer.BOX_BRACKET_CLOSE));
+        transition(START, "{", token(ICSSLexer.OPEN_BRACE));
+        transition(START, "}", token(ICSSLexer.CLOSE_BRACE));
+        transition(START, ";", token(ICSSLexer.SEMICOLON));
+        transition(START, "+", token(ICSSLexer.PLUS));
+        transition(START, "-", token(ICSSLexer.MIN));
+        transition(START, "*", token(ICSSLexer.MUL));
+    }
+
+    private static void transition(int from, String characters, int to) {
+        for (int i = 0; i < characters.length(); i++) {
+            TRANSITIONS[from * ROW + characters.charAt(i)] = to * ROW;
+        }
+    }
+
+    private static void accept(int state, int type) {
+        ACCEPTS[state] = type;
+    }
+
+    private static int token(int type) {
+        accept(FINAL + type, type);
+        return FINAL + type;
+    }
+
+    private ByteBufferCharStream input;
+    private ByteBuffer bytes;
+    private int size;
+    private Pair<TokenSource, CharStream> source;
+    private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+    private ANTLRErrorListener errorListener;
+
+    private int position;
+    private int line;
+    private int charPositionInLine;
+
+    public ICSSScanner(ByteBufferCharStream input) {
+        setInputStream(input);
+    }
+
+    /**
+     * Starts scanning the given input from the beginning, null releases the current input.
+     */
+    public void setInputStream(ByteBufferCharStream input) {
+        this.input = input;
+        this.bytes = input == null ? null : input.getBuffer();
+        this.size = input == null ? 0 : input.size();
+        this.source = new Pair<>(this, input);
+        this.position = 0;
+        this.line = 1;
+        this.charPositionInLine = 0;
+    }
+
+    /**
+     * Receives the token recognition errors, with the same message and position the generated lexer reports.
+     */
+    public void setErrorListener(ANTLRErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            final int start = position;
+            final int startLine = line;
+            final int startCharPositionInLine = charPositionInLine;
+
+            if (start == size) {
+                return factory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, size, size - 1, line, charPositionInLine);
+            }
+
+            //Follow the table as far as possible and remember the last token seen, like the generated lexer does
+            int row = START * ROW;
+            int current = start;
+            int acceptedType = Token.INVALID_TYPE;
+            int acceptedEnd = start;
+            while (current < size) {
+                final int next = TRANSITIONS[row + (bytes.get(current) & 0xFF)];
+                if (next == NONE) {
+                    break;
+                }
+                row = next;
+                current++;
+                final int type = ACCEPTS[row / ROW];
+                if (type != Token.INVALID_TYPE) {
+                    acceptedType = type;
+                    acceptedEnd = current;
+                }
+            }
+
+            if (acceptedType == Token.INVALID_TYPE) {
+                //The text up to and including the character that did not fit is reported, then that character is skipped
+                reportRecognitionError(start, current, startLine, startCharPositionInLine);
+                advance(start, Math.min(current + 1, size));
+                continue;
+            }
+
+            if (acceptedType == ICSSLexer.WS) {
+                advance(start, acceptedEnd);
+                continue;
+            }
+
+            //Only whitespace can contain a line break, so the other tokens stay on their line
+            position = acceptedEnd;
+            charPositionInLine += acceptedEnd - start;
+
+            final int type = isIdentifier(acceptedType) ? keywordOrIdentifier(acceptedType, start, acceptedEnd - start) : acceptedType;
+
+            return factory.create(source, type, null, Token.DEFAULT_CHANNEL, start, acceptedEnd - 1, startLine, startCharPositionInLine);
+        }
+    }
+
+    private static boolean isIdentifier(int type) {
+        return type == ICSSLexer.LOWER_IDENT || type == ICSSLexer.CAPITAL_IDENT;
+    }
+
+    private int keywordOrIdentifier(int type, int start, int length) {
+        if (type == ICSSLexer.LOWER_IDENT) {
+            if (matches(start, length, "if")) {
+                return ICSSLexer.IF;
+            }
+            if (matches(start, length, "else")) {
+                return ICSSLexer.ELSE;
+            }
+        } else {
+            if (matches(start, length, "TRUE")) {
+                return ICSSLexer.TRUE;
+            }
+            if (matches(start, length, "FALSE")) {
+                return ICSSLexer.FALSE;
+            }
+        }
+
+        return type;
+    }
+
+    private boolean matches(int start, int length, String keyword) {
+        if (length != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes.get(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void advance(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == '\n') {
+                line++;
+                charPositionInLine = 0;
+            } else {
+                charPositionInLine++;
+            }
+        }
+        position = to;
+    }
+
+    private void reportRecognitionError(int start, int stop, int startLine, int startCharPositionInLine) {
+        if (errorListener == null) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i <= stop && i < size; i++) {
+            final char character = (char) (bytes.get(i) & 0xFF);
+            switch (character) {
+                case '\n':
+                    text.append("\\n");
+                    break;
+                case '\t':
+                    text.append("\\t");
+                    break;
+                case '\r':
+                    text.append("\\r");
+                    break;
+                default:
+                    text.append(character);
+            }
+        }
+
+        errorListener.syntaxError(null, null, startLine, startCharPositionInLine,
+                String.format("token recognition error at: '%s'", text), null);
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return charPositionInLine;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input == null ? IntStream.UNKNOWN_SOURCE_NAME : input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return factory;
+    }
+}
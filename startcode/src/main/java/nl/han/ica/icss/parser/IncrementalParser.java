@@ -0,0 +1,220 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Stylesheet;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the text of a stylesheet and where each of its top-level lines (stylerules and variable assignments) starts and stops,
+ * so an edit only has to re-parse the lines it touches. The new lines are spliced into the body of the previous Stylesheet.
+ * <p>
+ * The re-parsed region always runs from just after the last untouched line before the edit to just before the first untouched
+ * line after it. Those lines end with '}' or ';' and start with an identifier, so no token can cross the region boundaries.
+ * Whenever the region does not parse cleanly into whole lines the complete text is parsed instead, which also reports the errors.
+ */
+public class IncrementalParser {
+
+    private String text;
+    private Stylesheet stylesheet;
+    //Start and stop (inclusive) character index of every line of the stylesheet body
+    private int[] spans = new int[0];
+    private int lineCount;
+    private boolean lastParseIncremental = false;
+
+    /**
+     * The text of the last parse, including all edits.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Whether the last {@link #applyEdit} re-parsed only the edited lines.
+     */
+    public boolean isLastParseIncremental() {
+        return lastParseIncremental;
+    }
+
+    /**
+     * Forgets the AST of the last parse but keeps its text, the next edit parses the whole text again.
+     */
+    public void releaseAST() {
+        stylesheet = null;
+        spans = new int[0];
+        lineCount = 0;
+    }
+
+    /**
+     * Forgets the text and the AST of the last parse, an edit then needs a new parse first.
+     */
+    public void reset() {
+        text = null;
+        lastParseIncremental = false;
+        releaseAST();
+    }
+
+    /**
+     * Parses the whole text and remembers the position of its lines for later edits.
+     */
+    public AST parse(ReusableParser parser, String text, ANTLRErrorListener errors) {
+        this.text = text;
+        this.stylesheet = null;
+        this.lastParseIncremental = false;
+
+        ErrorFlag errorFlag = new ErrorFlag(errors);
+        List<Interval> lineSpans = new ArrayList<>();
+        AST ast = parser.parse(CharStreams.fromString(text), errorFlag, lineSpans);
+
+        //Only an AST without syntax errors has one span per line, the others are always parsed again
+        if (!errorFlag.hasErrors && ast.root.body.size() == lineSpans.size()) {
+            this.stylesheet = ast.root;
+            this.lineCount = 0;
+            this.spans = new int[lineSpans.size() * 2];
+            for (Interval span : lineSpans) {
+                addSpan(span.a, span.b);
+            }
+        }
+
+        return ast;
+    }
+
+    /**
+     * Replaces length characters at offset with the replacement and returns the AST of the new text.
+     * When previous is the unmodified AST of the last parse, only the touched lines are parsed and previous is updated in place.
+     * Otherwise (or when previous is null) the whole new text is parsed.
+     */
+    public AST applyEdit(ReusableParser parser, AST previous, int offset, int length, String replacement, ANTLRErrorListener errors) {
+        if (text == null) {
+            throw new IllegalStateException("An edit needs the text of a previous parse");
+        }
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IndexOutOfBoundsException(String.format("Edit of %d characters at %d is outside the text of length %d", length, offset, text.length()));
+        }
+
+        final String newText = text.substring(0, offset) + replacement + text.substring(offset + length);
+        final boolean isReusable = stylesheet != null && previous != null && previous.root == stylesheet && stylesheet.body.size() == lineCount;
+
+        if (isReusable && reparseLines(parser, offset, length, replacement.length() - length, newText)) {
+            text = newText;
+            lastParseIncremental = true;
+            return previous;
+        }
+
+        return parse(parser, newText, errors);
+    }
+
+    private boolean reparseLines(ReusableParser parser, int offset, int length, int delta, String newText) {
+        //The touched lines are first..last, a line that only borders the edit counts as touched as well
+        final int first = firstLineEndingAtOrAfter(offset);
+        final int last = lastLineStartingAtOrBefore(offset + length);
+
+        final int regionStart = first > 0 ? stop(first - 1) + 1 : 0;
+        final int regionEnd = last + 1 < lineCount ? start(last + 1) : text.length();
+        final String region = newText.substring(regionStart, regionEnd + delta);
+
+        ErrorFlag errorFlag = new ErrorFlag(null);
+        List<Interval> lineSpans = new ArrayList<>();
+        AST regionAST;
+        try {
+            regionAST = parser.parse(CharStreams.fromString(region), errorFlag, lineSpans);
+        } catch (RuntimeException e) {
+            //Whatever went wrong, the full parse that follows reports it for the whole text
+            return false;
+        }
+
+        //The region must consist of whole lines only, trailing text the parser stopped at would otherwise be dropped
+        final int parsedUntil = lineSpans.isEmpty() ? 0 : lineSpans.get(lineSpans.size() - 1).b + 1;
+        if (errorFlag.hasErrors || regionAST.root.body.size() != lineSpans.size() || !region.substring(parsedUntil).isBlank()) {
+            return false;
+        }
+
+        ArrayList<ASTNode> body = stylesheet.body;
+        body.subList(first, last + 1).clear();
+        body.addAll(first, regionAST.root.body);
+        stylesheet.contentChanged();
+
+        int[] oldSpans = spans;
+        final int oldLineCount = lineCount;
+        spans = new int[(oldLineCount - (last + 1 - first) + lineSpans.size()) * 2];
+        lineCount = 0;
+        for (int line = 0; line < first; line++) {
+            addSpan(oldSpans[line * 2], oldSpans[line * 2 + 1]);
+        }
+        for (Interval span : lineSpans) {
+            addSpan(regionStart + span.a, regionStart + span.b);
+        }
+        for (int line = last + 1; line < oldLineCount; line++) {
+            addSpan(oldSpans[line * 2] + delta, oldSpans[line * 2 + 1] + delta);
+        }
+
+        return true;
+    }
+
+    private int firstLineEndingAtOrAfter(int index) {
+        int low = 0;
+        int high = lineCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (stop(middle) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int lastLineStartingAtOrBefore(int index) {
+        int low = 0;
+        int high = lineCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (start(middle) <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    private int start(int line) {
+        return spans[line * 2];
+    }
+
+    private int stop(int line) {
+        return spans[line * 2 + 1];
+    }
+
+    private void addSpan(int start, int stop) {
+        spans[lineCount * 2] = start;
+        spans[lineCount * 2 + 1] = stop;
+        lineCount++;
+    }
+
+    /*
+     Remembers whether any syntax error was reported, and passes the errors on when there is a target.
+     */
+    private static class ErrorFlag extends BaseErrorListener {
+        private final ANTLRErrorListener target;
+        private boolean hasErrors = false;
+
+        private ErrorFlag(ANTLRErrorListener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            hasErrors = true;
+            if (target != null) {
+                target.syntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e);
+            }
+        }
+    }
+}
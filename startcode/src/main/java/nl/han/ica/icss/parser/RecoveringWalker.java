@@ -0,0 +1,103 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.ASTNode;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+
+/**
+ * Walks a parse tree with an {@link ASTListener} one statement (stylerule, declaration, if-clause or variable assignment) at a time.
+ * When the listener rejects a value, the error is reported with the position of the rule it was found in, the statement is
+ * left out of the AST and the walk continues after its closing ';' or '}'. Statements that contain syntax errors are skipped
+ * without a walk, the parser has reported those already. {@link ReusableParser} holds the errors of the parser and the walk
+ * back until the walk is done and reports them sorted by position.
+ */
+class RecoveringWalker extends ParseTreeWalker {
+
+    private ANTLRErrorListener errors;
+    private boolean hasSyntaxErrors;
+    private ParserRuleContext currentRule;
+
+    /**
+     * Builds the partial AST in the listener, every rejected statement is reported to errors.
+     * When the parser reported no errors the statements do not have to be checked for them.
+     */
+    void walk(ASTListener listener, ParseTree tree, ANTLRErrorListener errors, boolean hasSyntaxErrors) {
+        this.errors = errors;
+        this.hasSyntaxErrors = hasSyntaxErrors;
+        try {
+            walk(listener, tree);
+        } finally {
+            this.errors = null;
+            this.currentRule = null;
+        }
+    }
+
+    @Override
+    public void walk(ParseTreeListener listener, ParseTree tree) {
+        if (isStatement(tree)) {
+            walkStatement((ASTListener) listener, (ParserRuleContext) tree);
+        } else {
+            super.walk(listener, tree);
+        }
+    }
+
+    private void walkStatement(ASTListener listener, ParserRuleContext statement) {
+        if (hasSyntaxErrors && containsSyntaxError(statement)) {
+            return;
+        }
+
+        ASTNode container = listener.getCurrentContainer();
+        try {
+            super.walk(listener, statement);
+        } catch (ParseCancellationException e) {
+            listener.discardUntil(container);
+            errors.syntaxError(null, currentRule.getStart(), currentRule.getStart().getLine(),
+                    currentRule.getStart().getCharPositionInLine(), e.getMessage(), null);
+        }
+    }
+
+    @Override
+    protected void enterRule(ParseTreeListener listener, RuleNode r) {
+        currentRule = (ParserRuleContext) r.getRuleContext();
+        super.enterRule(listener, r);
+    }
+
+    @Override
+    protected void exitRule(ParseTreeListener listener, RuleNode r) {
+        currentRule = (ParserRuleContext) r.getRuleContext();
+        super.exitRule(listener, r);
+    }
+
+    private static boolean isStatement(ParseTree tree) {
+        return tree instanceof ICSSParser.StyleruleContext
+                || tree instanceof ICSSParser.StyleDeclarationContext
+                || tree instanceof ICSSParser.IfClauseContext
+                || tree instanceof ICSSParser.VariableDeclarationContext;
+    }
+
+    /*
+     Only the part of the statement outside its nested statements counts, those are checked when they are walked.
+     */
+    private static boolean containsSyntaxError(ParserRuleContext rule) {
+        if (rule.exception != null) {
+            return true;
+        }
+
+        for (int i = 0; i < rule.getChildCount(); i++) {
+            ParseTree child = rule.getChild(i);
+            final boolean isNestedRule = child instanceof ParserRuleContext && !isStatement(child);
+
+            if (child instanceof ErrorNode || (isNestedRule && containsSyntaxError((ParserRuleContext) child))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,318 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.SymbolTable;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lexer, token stream, parser and listener bundled so they can be reset and used for many inputs.
+ * The components are not thread safe; use {@link #forCurrentThread()} to get an instance per thread.
+ */
+public class ReusableParser {
+
+    private static final ThreadLocal<ReusableParser> INSTANCES = ThreadLocal.withInitial(ReusableParser::new);
+
+    private final ICSSLexer lexer;
+    private final ICSSScanner scanner;
+    private final CommonTokenStream tokens;
+    private final ICSSParser parser;
+    private final ASTListener listener;
+    private final ASTBuilder builder;
+    private final RecoveringWalker recoveringWalker = new RecoveringWalker();
+    private final ForwardingErrorListener errorListener;
+    private final LineSpanListener lineSpanListener = new LineSpanListener();
+    private final ANTLRErrorStrategy defaultErrorStrategy = new DefaultErrorStrategy();
+    private final ANTLRErrorStrategy bailErrorStrategy = new BailErrorStrategy();
+
+    private boolean twoStagePrediction = false;
+    private boolean buildASTWhileParsing = false;
+    private boolean useScanner = false;
+    private boolean errorRecovery = false;
+    private boolean fullContextFallbackUsed = false;
+    private SymbolTable symbolTable;
+
+    public ReusableParser() {
+        errorListener = new ForwardingErrorListener();
+
+        lexer = new ICSSLexer(null);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+
+        scanner = new ICSSScanner(null);
+        scanner.setErrorListener(errorListener);
+
+        tokens = new CommonTokenStream(lexer);
+
+        parser = new ICSSParser(tokens);
+        parser.removeErrorListeners();
+        parser.addErrorListener(errorListener);
+
+        listener = new ASTListener();
+        builder = new ASTBuilder(tokens);
+    }
+
+    /**
+     * Returns the instance that belongs to the calling thread.
+     */
+    public static ReusableParser forCurrentThread() {
+        return INSTANCES.get();
+    }
+
+    /**
+     * When enabled, the input is first parsed with the cheaper SLL prediction and a bail-out error strategy.
+     * Only when that attempt fails the input is parsed again with full LL prediction, which also does the error reporting.
+     */
+    public void setTwoStagePrediction(boolean twoStagePrediction) {
+        this.twoStagePrediction = twoStagePrediction;
+    }
+
+    /**
+     * When enabled, the AST is built by an {@link ASTBuilder} while the parser runs, instead of walking a parse tree afterwards.
+     */
+    public void setBuildASTWhileParsing(boolean buildASTWhileParsing) {
+        this.buildASTWhileParsing = buildASTWhileParsing;
+    }
+
+    /**
+     * When enabled, inputs read through a {@link ByteBufferCharStream} are tokenized by the {@link ICSSScanner}
+     * instead of the generated lexer. Other inputs always use the generated lexer.
+     */
+    public void setUseScanner(boolean useScanner) {
+        this.useScanner = useScanner;
+    }
+
+    /**
+     * When enabled, a statement with an invalid value is reported and left out instead of abandoning the whole AST,
+     * so one parse returns a partial AST and all errors. Recovery always builds the parse tree first.
+     * The errors are reported after the walk, sorted by line and position in the line.
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+    /**
+     * The table the names of the parsed ASTs are interned in, so they can be shared between parses (like the edits of one text).
+     * With null, the default, every AST gets a table of its own.
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Whether the last two-stage parse had to fall back to full LL prediction.
+     */
+    public boolean isFullContextFallbackUsed() {
+        return fullContextFallbackUsed;
+    }
+
+    /**
+     * Lexes and parses the input and extracts the AST. Syntax errors are reported to the given listener.
+     */
+    public AST parse(CharStream input, ANTLRErrorListener errors) {
+        return parse(input, errors, null);
+    }
+
+    /**
+     * Like {@link #parse(CharStream, ANTLRErrorListener)}, and also adds the character interval of every
+     * top-level stylesheet line (a stylerule or variable assignment) to lineSpans, in the order of the AST.
+     */
+    public AST parse(CharStream input, ANTLRErrorListener errors, List<Interval> lineSpans) {
+        errorListener.target = errors;
+        lineSpanListener.spans = lineSpans;
+        listener.setSymbolTable(symbolTable);
+        builder.setSymbolTable(symbolTable);
+        if (lineSpans != null) {
+            parser.addParseListener(lineSpanListener);
+        }
+        try {
+            if (useScanner && input instanceof ByteBufferCharStream) {
+                scanner.setInputStream((ByteBufferCharStream) input);
+                tokens.setTokenSource(scanner);
+            } else {
+                lexer.setInputStream(input);
+                tokens.setTokenSource(lexer);
+            }
+            parser.setTokenStream(tokens);
+
+            if (buildASTWhileParsing && !errorRecovery) {
+                return buildAST();
+            }
+
+            //The walk reports its errors after those of the parser, they are reported together in the order of the input
+            errorListener.holdErrors(errorRecovery);
+            ParseTree parseTree = parseStylesheet();
+
+            listener.reset();
+            if (errorRecovery) {
+                recoveringWalker.walk(listener, parseTree, errorListener, parser.getNumberOfSyntaxErrors() > 0);
+                errorListener.reportHeldErrors();
+            } else {
+                ParseTreeWalker.DEFAULT.walk(listener, parseTree);
+            }
+
+            return listener.getAST();
+        } finally {
+            //Drop the references to this input, the instance may live as long as its thread
+            parser.removeParseListener(lineSpanListener);
+            lineSpanListener.spans = null;
+            errorListener.holdErrors(false);
+            errorListener.target = null;
+            lexer.setInputStream(null);
+            scanner.setInputStream(null);
+            tokens.setTokenSource(lexer);
+            listener.setSymbolTable(null);
+            builder.setSymbolTable(null);
+        }
+    }
+
+    private AST buildAST() {
+        parser.setBuildParseTree(false);
+        parser.addParseListener(builder);
+        try {
+            parseStylesheet();
+        } finally {
+            parser.removeParseListener(builder);
+            parser.setBuildParseTree(true);
+        }
+
+        if (builder.getFailure() != null) {
+            throw new ASTConstructionException(builder.getFailure());
+        }
+
+        return builder.getAST();
+    }
+
+    private ParseTree parseStylesheet() {
+        fullContextFallbackUsed = false;
+
+        if (twoStagePrediction) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(bailErrorStrategy);
+            builder.reset();
+            lineSpanListener.clear();
+            //The bail-out strategy reports the error before it bails, the LL pass reports it again with its own message
+            parser.removeErrorListener(errorListener);
+            try {
+                return parser.stylesheet();
+            } catch (ParseCancellationException e) {
+                //Rewind the already lexed tokens and let full LL prediction decide (and report the errors)
+                fullContextFallbackUsed = true;
+                tokens.seek(0);
+                parser.reset();
+            } finally {
+                parser.addErrorListener(errorListener);
+            }
+        }
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.setErrorHandler(defaultErrorStrategy);
+        builder.reset();
+        lineSpanListener.clear();
+        return parser.stylesheet();
+    }
+
+    private static class LineSpanListener extends ICSSBaseListener {
+        private List<Interval> spans;
+
+        private void clear() {
+            if (spans != null) {
+                spans.clear();
+            }
+        }
+
+        @Override
+        public void exitStylesheetLines(ICSSParser.StylesheetLinesContext ctx) {
+            if (ctx.exception == null && ctx.getStop() != null) {
+                spans.add(Interval.of(ctx.getStart().getStartIndex(), ctx.getStop().getStopIndex()));
+            }
+        }
+    }
+
+    /*
+     The ANTLR components keep their listener list, only the receiver of the errors changes per parse.
+     */
+    private static class ForwardingErrorListener implements ANTLRErrorListener {
+        private static final Comparator<HeldError> BY_POSITION =
+                Comparator.<HeldError>comparingInt(error -> error.line).thenComparingInt(error -> error.charPositionInLine);
+
+        private ANTLRErrorListener target;
+        private boolean isHoldingErrors;
+        private final List<HeldError> heldErrors = new ArrayList<>();
+
+        /*
+         Held syntax errors are only reported by reportHeldErrors, sorted by line and position in the line.
+         */
+        private void holdErrors(boolean isHoldingErrors) {
+            this.isHoldingErrors = isHoldingErrors;
+            heldErrors.clear();
+        }
+
+        private void reportHeldErrors() {
+            //The sort is stable, errors at the same position keep the order they were found in
+            heldErrors.sort(BY_POSITION);
+            for (HeldError error : heldErrors) {
+                target.syntaxError(error.recognizer, error.offendingSymbol, error.line, error.charPositionInLine, error.msg, error.e);
+            }
+            heldErrors.clear();
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            if (isHoldingErrors) {
+                heldErrors.add(new HeldError(recognizer, offendingSymbol, line, charPositionInLine, msg, e));
+            } else {
+                target.syntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e);
+            }
+        }
+
+        @Override
+        public void reportAmbiguity(Parser recognizer, DFA dfa, int startIndex, int stopIndex,
+                                    boolean exact, BitSet ambigAlts, ATNConfigSet configs) {
+            target.reportAmbiguity(recognizer, dfa, startIndex, stopIndex, exact, ambigAlts, configs);
+        }
+
+        @Override
+        public void reportAttemptingFullContext(Parser recognizer, DFA dfa, int startIndex, int stopIndex,
+                                                BitSet conflictingAlts, ATNConfigSet configs) {
+            target.reportAttemptingFullContext(recognizer, dfa, startIndex, stopIndex, conflictingAlts, configs);
+        }
+
+        @Override
+        public void reportContextSensitivity(Parser recognizer, DFA dfa, int startIndex, int stopIndex,
+                                             int prediction, ATNConfigSet configs) {
+            target.reportContextSensitivity(recognizer, dfa, startIndex, stopIndex, prediction, configs);
+        }
+    }
+
+    private static class HeldError {
+        private final Recognizer<?, ?> recognizer;
+        private final Object offendingSymbol;
+        private final int line;
+        private final int charPositionInLine;
+        private final String msg;
+        private final RecognitionException e;
+
+        private HeldError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                          int charPositionInLine, String msg, RecognitionException e) {
+            this.recognizer = recognizer;
+            this.offendingSymbol = offendingSymbol;
+            this.line = line;
+            this.charPositionInLine = charPositionInLine;
+            this.msg = msg;
+            this.e = e;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * A syntax error and where it was found. The line starts at 1, the position in the line at 0.
+ * Both are -1 when the position is not known.
+ */
+public class SyntaxError {
+    public final int line;
+    public final int charPositionInLine;
+    public final String description;
+
+    public SyntaxError(int line, int charPositionInLine, String description) {
+        this.line = line;
+        this.charPositionInLine = charPositionInLine;
+        this.description = description;
+    }
+
+    public SyntaxError(String description) {
+        this(-1, -1, description);
+    }
+
+    public String toString() {
+        return "Syntax error: " + description;
+    }
+}
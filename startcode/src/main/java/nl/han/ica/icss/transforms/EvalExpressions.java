@@ -6,79 +6,197 @@ import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class EvalExpressions implements Transform {
-    private LinkedList<HashMap<String, Literal>> variableValues;
+    private VariableFrames<Literal> variableValues;
+    private boolean bindsVariables = true;
+    private boolean parallel = false;
+    private final VariableBinder variableBinder = new VariableBinder();
 
     public EvalExpressions() {
-        variableValues = new LinkedList<>();
+        variableValues = new VariableFrames<>();
+    }
+
+    /**
+     * When disabled, the variable references keep the addresses a check of the same, unchanged AST gave them
+     * instead of being bound again, see {@link VariableBinder}.
+     */
+    public void setBindsVariables(boolean bindsVariables) {
+        this.bindsVariables = bindsVariables;
+    }
+
+    /**
+     * When enabled, the style rules are evaluated concurrently, after the variables of the stylesheet they use.
+     * The result is the same as without it.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
     }
 
     @Override
     public void apply(AST ast) {
-        traverseTreeAndEvaluate(ast.root);
+        if (bindsVariables) {
+            variableBinder.start(ast.symbols);
+        }
+        if (parallel) {
+            evaluateStylesheetInParallel(ast);
+        } else {
+            traverseTreeAndEvaluate(ast.root);
+        }
+    }
+
+    /*
+     The stylesheet level is bound and evaluated on this thread, the style rules in tasks. Like the check, a rule gets a fork
+     of the variable frames and a snapshot of the binder at its place in the stylesheet.
+     */
+    private void evaluateStylesheetInParallel(AST ast) {
+        final Stylesheet stylesheet = ast.root;
+        final List<RuleEvaluation> ruleEvaluations = new ArrayList<>();
+
+        evaluateNode(stylesheet);
+
+        final int childCount = stylesheet.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final ASTNode child = stylesheet.getChild(i);
+
+            if (child instanceof Stylerule) {
+                ruleEvaluations.add(new RuleEvaluation((Stylerule) child, variableValues.fork(),
+                        bindsVariables ? variableBinder.snapshot() : null));
+            } else {
+                traverseTreeAndEvaluate(child);
+            }
+        }
+
+        RuleTasks.run(ruleEvaluations, () -> new EvalExpressions()::evaluateRule);
+
+        exitScope();
+    }
+
+    private void evaluateRule(RuleEvaluation ruleEvaluation) {
+        variableValues = ruleEvaluation.variableValues;
+        bindsVariables = ruleEvaluation.binderSnapshot != null;
+        if (bindsVariables) {
+            variableBinder.start(ruleEvaluation.binderSnapshot);
+        }
+        traverseTreeAndEvaluate(ruleEvaluation.rule);
+    }
+
+    /*
+     A style rule of a parallel evaluation, with the values of the variables at its place in the stylesheet.
+     */
+    private static class RuleEvaluation {
+        final Stylerule rule;
+        final VariableFrames<Literal> variableValues;
+        final VariableBinder.Snapshot binderSnapshot;
+
+        RuleEvaluation(Stylerule rule, VariableFrames<Literal> variableValues, VariableBinder.Snapshot binderSnapshot) {
+            this.rule = rule;
+            this.variableValues = variableValues;
+            this.binderSnapshot = binderSnapshot;
+        }
     }
 
     private void traverseTreeAndEvaluate(ASTNode currentNode) {
-        List<ASTNode> children = currentNode.getChildren();
+        final boolean scopeCreated = evaluateNode(currentNode);
 
-        final boolean scopeCreated = generateScope(currentNode);
+        //The evaluation above may have replaced an expression child, the count is taken afterwards
+        final int childCount = currentNode.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            traverseTreeAndEvaluate(currentNode.getChild(i));
+        }
 
-        if (currentNode instanceof VariableAssignment) {
-            evaluateVariableAssignment((VariableAssignment) currentNode);
+        if (scopeCreated) {
+            exitScope();
+        }
+    }
+
+    private void enterScope() {
+        variableValues.enterScope();
+        if (bindsVariables) {
+            variableBinder.enterScope();
+        }
+    }
+
+    private void exitScope() {
+        variableValues.exitScope();
+        if (bindsVariables) {
+            variableBinder.exitScope();
+        }
+    }
+
+    /*
+     Evaluates the expressions of a single node and returns whether it opened a scope, which is closed again after its children.
+     Unlike the checker and the generator this does not dispatch through an ASTVisitor, PassProfiler measured the visitors
+     slower here: the evaluation runs for every node and expression, and is otherwise cheap.
+     */
+    private boolean evaluateNode(ASTNode currentNode) {
+        if (currentNode instanceof Stylesheet || currentNode instanceof Stylerule || currentNode instanceof ElseClause) {
+            enterScope();
+            return true;
         } else if (currentNode instanceof IfClause) {
+            enterScope();
             evaluateIfClause((IfClause) currentNode);
+            return true;
+        } else if (currentNode instanceof VariableAssignment) {
+            evaluateVariableAssignment((VariableAssignment) currentNode);
         } else if (currentNode instanceof Declaration) {
             evaluateDeclaration((Declaration) currentNode);
         }
+        return false;
+    }
 
-        children.forEach(this::traverseTreeAndEvaluate);
-
-        if (scopeCreated) {
-            variableValues.removeFirst();
+    /*
+     Replaces the expressions it evaluates by their value and returns every other expression unchanged.
+     A literal is its own value.
+     */
+    private Expression evaluate(Expression expression, boolean evaluatesOperations, boolean evaluatesConditions) {
+        if (expression instanceof VariableReference) {
+            return getVariableValue((VariableReference) expression);
+        } else if (expression instanceof Operation) {
+            return evaluatesOperations ? evaluateOperation((Operation) expression) : expression;
+        } else if (expression instanceof BooleanExpression) {
+            return evaluatesConditions ? evaluateBooleanExpression((BooleanExpression) expression) : expression;
+        } else if (expression instanceof BooleanComparison) {
+            return evaluatesConditions ? evaluateBooleanComparison((BooleanComparison) expression) : expression;
         }
+        return expression;
     }
 
-    private void evaluateIfClause(IfClause currentNode) {
-        final Expression conditionalExpression = currentNode.conditionalExpression;
+    //Declarations and operations evaluate values, if clauses conditions, assignments and comparisons every expression
+    private Expression evaluateValue(Expression expression) {
+        return evaluate(expression, true, false);
+    }
 
-        if (conditionalExpression instanceof VariableReference) {
-            final String expressionName = ((VariableReference) conditionalExpression).name;
-            currentNode.conditionalExpression = getVariableValue(expressionName);
-        } else if (conditionalExpression instanceof BooleanExpression) {
-            final BooleanExpression booleanExpression = ((BooleanExpression) conditionalExpression);
-            currentNode.conditionalExpression = evaluateBooleanExpression(booleanExpression);
-        } else if (conditionalExpression instanceof BooleanComparison) {
-            final BooleanComparison booleanComparison = (BooleanComparison) conditionalExpression;
-            currentNode.conditionalExpression = evaluateBooleanComparison(booleanComparison);
-        }
+    private Expression evaluateCondition(Expression expression) {
+        return evaluate(expression, false, true);
+    }
+
+    private Expression evaluateExpression(Expression expression) {
+        return evaluate(expression, true, true);
+    }
+
+    private void evaluateIfClause(IfClause currentNode) {
+        currentNode.conditionalExpression = evaluateCondition(currentNode.conditionalExpression);
+        currentNode.contentChanged();
     }
 
     private void evaluateVariableAssignment(VariableAssignment currentNode) {
-        final String variableName = currentNode.name.name;
-        final Expression expression = currentNode.expression;
-        HashMap<String, Literal> currentScope = variableValues.getFirst();
-        Literal variableValue = null;
-
-        if (expression instanceof Operation) {
-            variableValue = evaluateVariableAssignmentOperation((Operation) expression);
-        } else if (expression instanceof Literal) {
-            currentScope.put(variableName, (Literal) expression);
-            return;
-        } else if (expression instanceof VariableReference) {
-            variableValue = evaluateVariableReference((VariableReference) expression);
-        } else if (expression instanceof BooleanExpression) {
-            variableValue = evaluateBooleanExpression((BooleanExpression) expression);
-        } else if (expression instanceof BooleanComparison) {
-            variableValue = evaluateBooleanComparison((BooleanComparison) expression);
+        if (bindsVariables) {
+            variableBinder.enterAssignment(currentNode);
+        }
+        variableValues.enterAssignment(currentNode);
+        //Every kind of expression is evaluated, so the value is always a literal
+        final Literal variableValue = (Literal) evaluateExpression(currentNode.expression);
+        if (bindsVariables) {
+            variableBinder.exitAssignment();
         }
 
         currentNode.expression = variableValue;
+        currentNode.contentChanged();
         if (variableValue != null) {
-            currentScope.put(variableName, variableValue);
+            variableValues.assign(currentNode, variableValue);
         }
     }
 
@@ -88,50 +206,17 @@ public class EvalExpressions implements Transform {
 
         ComparisonOperator operator = expression.getOperator();
 
-        determineLeftRightPath(expression, left, right);
+        expression.setLeft(evaluateExpression(left));
+        expression.setRight(evaluateExpression(right));
 
         Literal leftLiteral = (Literal) expression.getLeft();
         Literal rightLiteral = (Literal) expression.getRight();
 
 
         if (expression.isNegated()) {
-            return new BoolLiteral(!(leftLiteral.evaluate(rightLiteral, operator)));
+            return BoolLiteral.valueOf(!(leftLiteral.evaluate(rightLiteral, operator)));
         } else {
-            return new BoolLiteral(leftLiteral.evaluate(rightLiteral, operator));
-        }
-    }
-
-    private void determineLeftRightPath(BooleanComparison expression, Expression left, Expression right) {
-        if (left instanceof BooleanComparison) {
-            expression.setLeft(evaluateBooleanComparison((BooleanComparison) left));
-        }
-
-        if (right instanceof BooleanComparison) {
-            expression.setRight(evaluateBooleanComparison((BooleanComparison) right));
-        }
-
-        if (left instanceof BooleanExpression) {
-            expression.setLeft(evaluateBooleanExpression((BooleanExpression) left));
-        }
-
-        if (right instanceof BooleanExpression) {
-            expression.setRight(evaluateBooleanExpression((BooleanExpression) right));
-        }
-
-        if (left instanceof VariableReference) {
-            expression.setLeft(getVariableValue(((VariableReference) left).name));
-        }
-
-        if (right instanceof VariableReference) {
-            expression.setRight(getVariableValue(((VariableReference) right).name));
-        }
-
-        if (left instanceof Operation) {
-            expression.setLeft(evaluateOperation((Operation) left));
-        }
-
-        if (right instanceof Operation) {
-            expression.setRight(evaluateOperation((Operation) right));
+            return BoolLiteral.valueOf(leftLiteral.evaluate(rightLiteral, operator));
         }
     }
 
@@ -140,8 +225,7 @@ public class EvalExpressions implements Transform {
         Literal variableValue;
 
         if (booleanExpression instanceof VariableReference) {
-            final String booleanExpressionName = ((VariableReference) booleanExpression).name;
-            variableValue = getVariableValue(booleanExpressionName);
+            variableValue = getVariableValue((VariableReference) booleanExpression);
             variableValue = expression.isNegated() ? negateValue(variableValue) : variableValue;
 
             return variableValue;
@@ -154,95 +238,39 @@ public class EvalExpressions implements Transform {
         return null;
     }
 
-    private Literal copyLiteral(Literal literal) {
-        if (literal instanceof BoolLiteral) {
-            return new BoolLiteral(((BoolLiteral) literal).value);
-        }
-
-        return null;
-    }
-
-    private Literal evaluateVariableReference(VariableReference expression) {
-        final String expressionName = expression.name;
-        return getVariableValue(expressionName);
-    }
-
-    private Literal evaluateVariableAssignmentOperation(Operation operation) {
-        return evaluateOperation(operation);
-    }
-
     private Literal negateValue(Literal value) {
         if (value instanceof BoolLiteral) {
-            value = copyLiteral(value);
-            boolean internalValue = ((BoolLiteral) value).value;
-            ((BoolLiteral) value).value = !internalValue;
+            return BoolLiteral.valueOf(!((BoolLiteral) value).value);
         }
         return value;
     }
 
     private void evaluateDeclaration(Declaration currentNode) {
-        final Expression expression = currentNode.expression;
-
-        if (expression instanceof VariableReference) {
-            final String variableName = ((VariableReference) expression).name;
-            currentNode.expression = getVariableValue(variableName);
-        } else if (expression instanceof Operation) {
-            currentNode.expression = evaluateOperation((Operation) expression);
-        }
-    }
-
-    private boolean generateScope(ASTNode currentNode) {
-        if (currentNode instanceof Stylesheet
-                || currentNode instanceof Stylerule
-                || currentNode instanceof IfClause
-                || currentNode instanceof ElseClause) {
-            HashMap<String, Literal> currentScope = new HashMap<>();
-            variableValues.addFirst(currentScope);
-            return true;
-        }
-        return false;
+        currentNode.expression = evaluateValue(currentNode.expression);
+        currentNode.contentChanged();
     }
 
     private Literal evaluateOperation(Operation operation) {
-        if (operation.lhs instanceof Operation) {
-            operation.lhs = evaluateOperation((Operation) operation.lhs);
-        }
-
-        if (operation.rhs instanceof Operation) {
-            operation.rhs = evaluateOperation((Operation) operation.rhs);
-        }
-
-        if (operation.lhs instanceof VariableReference) {
-            operation.lhs = getVariableValue(((VariableReference) operation.lhs).name);
-        }
-
-        if (operation.rhs instanceof VariableReference) {
-            operation.rhs = getVariableValue(((VariableReference) operation.rhs).name);
-        }
+        operation.lhs = evaluateValue(operation.lhs);
+        operation.rhs = evaluateValue(operation.rhs);
+        operation.contentChanged();
 
         if (operation.lhs instanceof PixelLiteral || operation.rhs instanceof PixelLiteral) {
-            return new PixelLiteral(operation.evaluate());
+            return PixelLiteral.valueOf(operation.evaluate());
         } else if (operation.lhs instanceof PercentageLiteral || operation.rhs instanceof PercentageLiteral) {
-            return new PercentageLiteral(operation.evaluate());
+            return PercentageLiteral.valueOf(operation.evaluate());
         } else if (operation.lhs instanceof ScalarLiteral || operation.rhs instanceof ScalarLiteral) {
-            return new ScalarLiteral(operation.evaluate());
+            return ScalarLiteral.valueOf(operation.evaluate());
         }
 
 
         return null;
     }
 
-    private Literal getVariableValue(String variableName) {
-        for (HashMap<String, Literal> currentScope : variableValues) {
-            Literal value = currentScope.get(variableName);
-
-            final boolean valueFound = value != null;
-
-            if (valueFound) {
-                return value;
-            }
+    private Literal getVariableValue(VariableReference variable) {
+        if (bindsVariables) {
+            variableBinder.bindReference(variable);
         }
-
-        return null;
+        return variableValues.get(variable);
     }
 }
@@ -0,0 +1,52 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+
+/*
+ Copies the nodes of a tree that the transforms can change, together with the path from the root to them.
+ Every other subtree is shared with the original tree.
+ */
+final class PathCopier {
+
+    private PathCopier() {
+    }
+
+    static AST copyChangeable(AST ast) {
+        AST copy = new AST(ast.symbols);
+        if (ast.root != null) {
+            copy.setRoot((Stylesheet) copyChangeable(ast.root));
+        }
+        return copy;
+    }
+
+    /*
+     Returns the node itself when nothing in its subtree can change, otherwise a copy in which the changeable children are copied as well.
+     */
+    private static ASTNode copyChangeable(ASTNode node) {
+        ASTNode copy = isChangeable(node) ? node.copy() : null;
+
+        final int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final ASTNode child = node.getChild(i);
+            if (node instanceof VariableAssignment && child == ((VariableAssignment) node).name) {
+                //The name of an assignment is only read
+                continue;
+            }
+            final ASTNode childCopy = copyChangeable(child);
+            if (childCopy != child) {
+                if (copy == null) {
+                    copy = node.copy();
+                }
+                copy.setChild(i, childCopy);
+            }
+        }
+
+        return copy != null ? copy : node;
+    }
+
+    private static boolean isChangeable(ASTNode node) {
+        //Expressions are evaluated into literals and if clauses are flattened into their parent, the other nodes only change through these
+        return node instanceof VariableReference || node instanceof Operation || node instanceof BooleanExpression
+                || node instanceof BooleanComparison || node instanceof IfClause;
+    }
+}
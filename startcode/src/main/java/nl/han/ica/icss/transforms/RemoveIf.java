@@ -5,45 +5,108 @@ package nl.han.ica.icss.transforms;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
 
+import java.util.ArrayList;
 import java.util.List;
 //EIND UITWERKING
 
 public class RemoveIf implements Transform {
     private ASTNode scope;
     private ASTNode parentOfCurrentNode;
+    private final Traversal traversal = new Traversal();
+    private boolean parallel = false;
+
+    /**
+     * When enabled, the if clauses of the style rules are removed concurrently, every rule is a scope of its own.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
     @Override
     public void apply(AST ast) {
-        scope = ast.root;
-        traverseTree(ast.root);
+        if (parallel) {
+            final List<Stylerule> stylerules = new ArrayList<>();
+            final int childCount = ast.root.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                if (ast.root.getChild(i) instanceof Stylerule) {
+                    stylerules.add((Stylerule) ast.root.getChild(i));
+                }
+            }
+            RuleTasks.run(stylerules, () -> new RemoveIf()::traverseTree);
+        } else {
+            scope = ast.root;
+            traverseTree(ast.root);
+        }
     }
 
     private void traverseTree(ASTNode currentNode) {
-        List<ASTNode> children = currentNode.getChildren();
+        currentNode.accept(traversal);
+    }
+
+    /*
+     A stylerule is the scope that the declarations of its evaluated if clauses move to, the parent of an if clause
+     is the stylerule, if clause or else clause around it.
+     */
+    private class Traversal extends ASTVisitor<Void> {
+        @Override
+        public Void visitNode(ASTNode node) {
+            traverseChildren(node);
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule stylerule) {
+            scope = stylerule;
+            parentOfCurrentNode = stylerule;
+            traverseChildren(stylerule);
+            return null;
+        }
 
-        if (currentNode instanceof IfClause) {
-            if (evaluateIfClause(currentNode, children)) {
-                return;
+        @Override
+        public Void visitIfClause(IfClause ifClause) {
+            if (!evaluateIfClause(ifClause)) {
+                parentOfCurrentNode = ifClause;
+                traverseChildren(ifClause);
             }
+            return null;
         }
 
-        setScope(currentNode);
-        setParent(currentNode);
-        children.forEach(this::traverseTree);
+        @Override
+        public Void visitElseClause(ElseClause elseClause) {
+            parentOfCurrentNode = elseClause;
+            traverseChildren(elseClause);
+            return null;
+        }
     }
 
-    private boolean evaluateIfClause(ASTNode currentNode, List<ASTNode> children) {
-        Expression expression = ((IfClause) currentNode).conditionalExpression;
-        ElseClause elseClause = ((IfClause) currentNode).elseClause;
+    /*
+     Visits the children the node has now. Traversing a child can remove that child (an evaluated if clause)
+     and add declarations at the end, so the index only moves on when the child is still in place.
+     */
+    private void traverseChildren(ASTNode currentNode) {
+        int index = 0;
+        for (int remaining = currentNode.getChildCount(); remaining > 0; remaining--) {
+            ASTNode child = currentNode.getChild(index);
+            traverseTree(child);
+
+            final boolean childStillInPlace = index < currentNode.getChildCount() && currentNode.getChild(index) == child;
+            if (childStillInPlace) {
+                index++;
+            }
+        }
+    }
+
+    private boolean evaluateIfClause(IfClause currentNode) {
+        Expression expression = currentNode.conditionalExpression;
+        ElseClause elseClause = currentNode.elseClause;
 
         if (expression instanceof BoolLiteral) {
             final boolean value = ((BoolLiteral) expression).value;
 
             if (value) {
-                evaluateChildren(children);
+                evaluateChildren(currentNode);
             } else if (elseClause != null) {
-                List<ASTNode> elseChildren = elseClause.getChildren();
-                evaluateChildren(elseChildren);
+                evaluateChildren(elseClause);
             }
 
             parentOfCurrentNode.removeChild(currentNode);
@@ -53,24 +116,17 @@ public class RemoveIf implements Transform {
         return false;
     }
 
-    private void evaluateChildren(List<ASTNode> children) {
-        children.stream()
-                .filter(node -> node instanceof Declaration)
-                .forEach(scope::addChild);
-        children.stream().filter(node -> node instanceof IfClause).forEach(this::traverseTree);
-    }
-
-    private void setScope(ASTNode currentNode) {
-        if (currentNode instanceof Stylerule) {
-            scope = currentNode;
+    private void evaluateChildren(ASTNode branch) {
+        final int childCount = branch.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (branch.getChild(i) instanceof Declaration) {
+                scope.addChild(branch.getChild(i));
+            }
         }
-    }
-
-    private void setParent(ASTNode currentNode) {
-        if (currentNode instanceof Stylerule
-                || currentNode instanceof IfClause
-                || currentNode instanceof ElseClause) {
-            parentOfCurrentNode = currentNode;
+        for (int i = 0; i < childCount; i++) {
+            if (branch.getChild(i) instanceof IfClause) {
+                traverseTree(branch.getChild(i));
+            }
         }
     }
 
@@ -4,4 +4,15 @@ import nl.han.ica.icss.ast.AST;
 
 public interface Transform {
     void apply(AST ast);
+
+    /**
+     * Transforms a copy of the AST and leaves the given one unchanged. Only the nodes that contain a variable reference,
+     * an operation, a boolean expression or an if clause are copied, all other subtrees are shared with the given AST.
+     * So several transforms can start from the same AST, also at the same time.
+     */
+    default AST transform(AST ast) {
+        AST result = PathCopier.copyChangeable(ast);
+        apply(result);
+        return result;
+    }
 }
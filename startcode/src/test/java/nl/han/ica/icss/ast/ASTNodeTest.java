@@ -0,0 +1,149 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTNodeTest {
+
+    String readTestFile(String resource) throws IOException {
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testContentHashFollowsChanges() throws IOException {
+
+        String text = readTestFile("level3.icss");
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(text);
+        AST ast = pipeline.getAST();
+        Stylerule first = (Stylerule) ast.root.body.get(4);
+        final int parsedHash = ast.root.contentHash();
+        final int firstHash = first.contentHash();
+        assertEquals(Fixtures.uncheckedLevel3().root.contentHash(), parsedHash);
+
+        //The transforms assign fields deep in the tree, the cached hashes of the ancestors must follow
+        Pipeline expected = new Pipeline();
+        expected.parseString(text);
+        expected.check();
+        expected.transform();
+        assertTrue(pipeline.check());
+        pipeline.transform();
+        assertNotEquals(parsedHash, ast.root.contentHash());
+        assertNotEquals(firstHash, first.contentHash());
+        assertEquals(expected.getAST().root.contentHash(), ast.root.contentHash());
+        assertEquals(expected.getAST(), ast);
+
+        //An incremental edit replaces only the edited stylerule
+        Pipeline edited = new Pipeline();
+        edited.parseString(text);
+        Stylerule last = (Stylerule) edited.getAST().root.body.get(edited.getAST().root.body.size() - 1);
+        final int lastHash = last.contentHash();
+        final int editedHash = edited.getAST().root.contentHash();
+        edited.applyEdit(text.indexOf("20px;"), 2, "30");
+        assertTrue(edited.isLastParseIncremental());
+        assertNotEquals(editedHash, edited.getAST().root.contentHash());
+        assertEquals(lastHash, last.contentHash());
+    }
+
+    @Test
+    void testContentHashFollowsChangesOfSharedNodes() {
+
+        Declaration declaration = new Declaration("width");
+        declaration.addChild(PixelLiteral.valueOf(10));
+        Stylerule first = new Stylerule(new TagSelector("p"), new ArrayList<>());
+        first.addChild(declaration);
+        Stylerule second = new Stylerule(new TagSelector("p"), new ArrayList<>());
+        final int secondHash = second.contentHash();
+        second.addChild(declaration);
+        Stylerule copy = first.copy();
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addChild(first);
+        stylesheet.addChild(second);
+        stylesheet.addChild(copy);
+        final int firstHash = first.contentHash();
+        final int stylesheetHash = stylesheet.contentHash();
+        assertNotEquals(secondHash, second.contentHash());
+        assertEquals(firstHash, second.contentHash());
+        assertEquals(firstHash, copy.contentHash());
+
+        //The rules that share the declaration see the change as well
+        declaration.setChild(1, PixelLiteral.valueOf(20));
+        final int changedHash = new Stylerule(new TagSelector("p"), new ArrayList<>(List.of(declaration))).contentHash();
+        assertNotEquals(firstHash, changedHash);
+        assertEquals(changedHash, first.contentHash());
+        assertEquals(changedHash, second.contentHash());
+        assertEquals(changedHash, copy.contentHash());
+        assertNotEquals(stylesheetHash, stylesheet.contentHash());
+    }
+
+    @Test
+    void testLiteralsAreShared() {
+
+        String input = "Flag := TRUE;\nOff := !Flag;\np { width: 10px; height: 10px; }";
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+            pipeline.parseString(input);
+
+            AST ast = pipeline.getAST();
+            Stylerule stylerule = (Stylerule) ast.root.body.get(2);
+            assertSame(BoolLiteral.TRUE, ((VariableAssignment) ast.root.body.get(0)).expression);
+            assertSame(((Declaration) stylerule.body.get(0)).expression, ((Declaration) stylerule.body.get(1)).expression);
+
+            assertTrue(pipeline.check());
+            pipeline.transform();
+            assertSame(BoolLiteral.FALSE, ((VariableAssignment) pipeline.getAST().root.body.get(1)).expression);
+        }
+    }
+
+    @Test
+    void testContentEqualsComparesNodesWithTheSameContentHash() {
+
+        //"cn" and "e0" have the same String hash, so the nodes with those names have the same content hash
+        PropertyName cn = new PropertyName("cn");
+        PropertyName e0 = new PropertyName("e0");
+        assertEquals(cn.contentHash(), e0.contentHash());
+        assertFalse(cn.contentEquals(e0));
+        assertTrue(cn.contentEquals(new PropertyName("cn")));
+
+        Stylerule first = new Stylerule(new TagSelector("p"), new ArrayList<>());
+        first.addChild(new Declaration("cn").addChild(new PixelLiteral(10)));
+        Stylerule second = new Stylerule(new TagSelector("p"), new ArrayList<>());
+        second.addChild(new Declaration("e0").addChild(new PixelLiteral(10)));
+        assertEquals(first.contentHash(), second.contentHash());
+        assertFalse(first.contentEquals(second));
+    }
+
+    @Test
+    void testEqualsComparesIdentity() {
+
+        Declaration declaration = new Declaration("width");
+        declaration.addChild(PixelLiteral.valueOf(10));
+        Set<ASTNode> nodes = new HashSet<>(List.of(declaration));
+        assertNotEquals(declaration, declaration.copy());
+        assertTrue(declaration.contentEquals(declaration.copy()));
+
+        //A node is found again after a change of its content
+        declaration.setChild(1, PixelLiteral.valueOf(20));
+        assertTrue(nodes.contains(declaration));
+    }
+}
@@ -0,0 +1,95 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTSnapshotTest {
+
+    String readTestFile(String resource) throws IOException {
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testSnapshotResumesWithoutParsing(@TempDir Path directory) throws IOException {
+
+        Pipeline expected = new Pipeline();
+        expected.parseString(readTestFile("level3.icss"));
+        expected.check();
+        expected.transform();
+
+        Path parsed = directory.resolve("parsed.icssast");
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(readTestFile("level3.icss"));
+        pipeline.saveSnapshot(parsed);
+
+        for (boolean useCompactAST : new boolean[]{false, true}) {
+            Pipeline resumed = new Pipeline();
+            resumed.setUseCompactAST(useCompactAST);
+            resumed.loadSnapshot(parsed);
+            assertTrue(resumed.isParsed());
+            assertFalse(resumed.isChecked());
+            assertEquals(Fixtures.uncheckedLevel3(), resumed.getAST());
+            assertTrue(resumed.check());
+            resumed.transform();
+            assertEquals(expected.generate(), resumed.generate());
+        }
+
+        //A checked snapshot keeps the semantic errors of its nodes
+        Path checked = directory.resolve("checked.icssast");
+        pipeline.parseString("p { width: Undefined; }");
+        assertFalse(pipeline.check());
+        pipeline.saveSnapshot(checked);
+        Pipeline resumed = new Pipeline();
+        resumed.loadSnapshot(checked);
+        assertEquals(pipeline.getAST().getErrors().toString(), resumed.getAST().getErrors().toString());
+        assertThrows(IllegalStateException.class, () -> resumed.applyEdit(0, 0, ""));
+    }
+
+    @Test
+    void testTruncatedSnapshotKeepsPipeline(@TempDir Path directory) throws IOException {
+
+        Path file = directory.resolve("level3.icssast");
+        Pipeline saved = new Pipeline();
+        saved.parseString(readTestFile("level3.icss"));
+        saved.saveSnapshot(file);
+        final byte[] bytes = Files.readAllBytes(file);
+
+        for (boolean useCompactAST : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setUseCompactAST(useCompactAST);
+            pipeline.parseString("p { width: 10px; }");
+            final String parsedAST = pipeline.getAST().toString();
+
+            //Every cut, in the header, the string table and the nodes, is an error that leaves the last parse in place
+            Path truncated = directory.resolve("truncated.icssast");
+            for (int length = 0; length < bytes.length; length++) {
+                Files.write(truncated, Arrays.copyOf(bytes, length));
+                assertThrows(IOException.class, () -> pipeline.loadSnapshot(truncated));
+                assertTrue(pipeline.isParsed());
+                assertEquals(parsedAST, pipeline.getAST().toString());
+            }
+
+            //The third last byte is the kind of the last node, the reference to LinkColor; 0x1F is no kind
+            byte[] corrupt = bytes.clone();
+            corrupt[corrupt.length - 3] = 0x1F;
+            Files.write(truncated, corrupt);
+            assertThrows(IOException.class, () -> pipeline.loadSnapshot(truncated));
+            assertEquals(parsedAST, pipeline.getAST().toString());
+        }
+    }
+}
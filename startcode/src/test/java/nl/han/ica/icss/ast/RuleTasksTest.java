@@ -0,0 +1,47 @@
+package nl.han.ica.icss.ast;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleTasksTest {
+
+    @Test
+    void testTasksRunInPoolOfCaller() throws ExecutionException, InterruptedException {
+
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(i);
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+        AtomicInteger workers = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+
+        try {
+            pool.submit(() -> RuleTasks.run(items, () -> {
+                workers.incrementAndGet();
+                return item -> {
+                    pools.add(ForkJoinTask.getPool());
+                    processed.incrementAndGet();
+                };
+            })).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        //Four tasks for each of the two threads of the pool, whatever the parallelism of the common pool is
+        assertEquals(Set.of(pool), pools);
+        assertEquals(8, workers.get());
+        assertEquals(100, processed.get());
+    }
+}
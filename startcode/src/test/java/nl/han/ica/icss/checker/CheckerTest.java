@@ -0,0 +1,184 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckerTest {
+
+    @Test
+    void testCheckerCollectsEveryError() {
+
+        String input = "p { font: #ffffff; width: Undefined; }\na { color: 10px; }";
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        assertFalse(pipeline.check());
+
+        //Both errors of the first declaration are kept, in the order they were found
+        List<SemanticError> errors = pipeline.getSemanticErrors();
+        assertEquals(5, errors.size());
+        Stylerule first = (Stylerule) pipeline.getAST().root.body.get(0);
+        assertSame(first.body.get(0), errors.get(0).node);
+        assertSame(first.body.get(0), errors.get(1).node);
+        assertEquals("font is not a legal property name!", errors.get(0).description);
+        assertEquals("font has an illegal value type or expression!", errors.get(1).description);
+        assertEquals(5, pipeline.getErrors().size());
+
+        Pipeline failFast = new Pipeline();
+        failFast.setMaxSemanticErrors(2);
+        failFast.parseString(input);
+        assertFalse(failFast.check());
+        assertEquals(errors.subList(0, 2).toString(), failFast.getSemanticErrors().toString());
+        assertFalse(failFast.getAST().root.body.get(1).getChild(1).hasError());
+    }
+
+    @Test
+    void testCheckerInfersEveryOperationOnce() {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("A := 1px;\np { width: 2 * A + 1px; height: 1px + #ffffff * 2; }");
+        assertFalse(pipeline.check());
+        assertEquals(2, pipeline.getSemanticErrors().size());
+
+        Stylerule p = (Stylerule) pipeline.getAST().root.body.get(1);
+        Operation width = (Operation) ((Declaration) p.body.get(0)).expression;
+        Operation height = (Operation) ((Declaration) p.body.get(1)).expression;
+        assertEquals(ExpressionType.PIXEL, width.inferred.type);
+        assertEquals(ExpressionType.PIXEL, ((Operation) width.lhs).inferred.type);
+        assertEquals(ExpressionType.UNDEFINED, height.inferred.type);
+        assertEquals(ExpressionType.UNDEFINED, ((Operation) height.rhs).inferred.type);
+        assertSame(height, pipeline.getSemanticErrors().get(0).node);
+    }
+
+    @Test
+    void testOperationTypeFollowsItsLiterals() {
+
+        //A pixel literal decides the type over a nested percentage, nested operations on both sides give the type of the left one
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("A := 2 * 3% + 5px;\nC := 2 * 3 + 2 * 10%;\nD := 3 * #ffffff;\np { width: A; height: C; }");
+        assertFalse(pipeline.check());
+
+        assertEquals(List.of("Illegal operation", "Illegal operation", "VariableAssignment: D is referencing an undefined variable",
+                        "Illegal operation", "height has an illegal value type or expression!"),
+                pipeline.getSemanticErrors().stream().map(error -> error.description).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testParallelCheckKeepsErrorOrder() {
+
+        StringBuilder input = new StringBuilder("A := 1px;\n");
+        for (int i = 0; i < 200; i++) {
+            input.append("p { C := A; width: C; color: ").append(i % 3 == 0 ? "B" : "A").append("; }\n");
+            input.append(i % 50 == 0 ? "A := 2px;\nB := #ffffff;\n" : "");
+        }
+
+        Pipeline sequential = new Pipeline();
+        sequential.parseString(input.toString());
+        assertFalse(sequential.check());
+
+        Pipeline parallel = new Pipeline();
+        parallel.setParallelCheck(true);
+        parallel.parseString(input.toString());
+        assertFalse(parallel.check());
+        assertEquals(sequential.getErrors(), parallel.getErrors());
+        //The first rule comes before B is assigned
+        assertEquals("B variable has not been initialized!", parallel.getSemanticErrors().get(1).description);
+
+        Pipeline failFast = new Pipeline();
+        failFast.setParallelCheck(true);
+        failFast.setMaxSemanticErrors(3);
+        failFast.parseString(input.toString());
+        assertFalse(failFast.check());
+        assertEquals(sequential.getErrors().subList(0, 3), failFast.getErrors());
+    }
+
+    @Test
+    void testIncrementalCheckOnlyChecksChangedRules() {
+
+        String text = "A := 1px;\np { width: A; }\na { color: #ffffff; }\n.b { height: 10px; }\n";
+        Pipeline pipeline = new Pipeline();
+        pipeline.setIncrementalCheck(true);
+        pipeline.parseString(text);
+        assertTrue(pipeline.check());
+        assertEquals(0, pipeline.getReusedRuleCount());
+
+        //Only the edited rule is checked again
+        pipeline.applyEdit(text.indexOf("10px"), 2, "20");
+        assertTrue(pipeline.check());
+        assertEquals(2, pipeline.getReusedRuleCount());
+
+        //A variable that changes type checks the rules that read it again
+        text = text.replace("10px", "20px");
+        pipeline.applyEdit(text.indexOf("1px"), 3, "#000000");
+        Pipeline expected = new Pipeline();
+        expected.parseString(text.replace("1px", "#000000"));
+        assertFalse(expected.check());
+        assertFalse(pipeline.check());
+        assertEquals(2, pipeline.getReusedRuleCount());
+        assertEquals(expected.getErrors(), pipeline.getErrors());
+
+        //The errors of the last check are removed from the nodes, the edit still only parses the touched line
+        pipeline.applyEdit(text.indexOf("1px"), 7, "1px");
+        assertTrue(pipeline.isLastParseIncremental());
+        assertTrue(pipeline.check());
+        assertFalse(((Stylerule) pipeline.getAST().root.body.get(1)).body.get(0).hasError());
+
+        expected.parseString(text);
+        assertTrue(expected.check());
+        expected.transform();
+        pipeline.transform();
+        assertEquals(expected.generate(), pipeline.generate());
+    }
+
+    @Test
+    void testIncrementalCheckDoesNotReuseRuleWithSameContentHash() {
+
+        //"width" and "wif6h" have the same String hash, so both rules have the same content hash
+        Pipeline pipeline = new Pipeline();
+        pipeline.setIncrementalCheck(true);
+        pipeline.parseString("a { width: 10px; }");
+        assertTrue(pipeline.check());
+        final int checkedHash = pipeline.getAST().root.body.get(0).contentHash();
+
+        pipeline.parseString("a { wif6h: 10px; }");
+        assertEquals(checkedHash, pipeline.getAST().root.body.get(0).contentHash());
+        assertFalse(pipeline.check());
+        assertEquals(0, pipeline.getReusedRuleCount());
+        assertEquals("[ERROR: wif6h is not a legal property name!]", pipeline.getErrors().toString());
+    }
+
+    @Test
+    void testVariablesAreBoundToFrameSlots() {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("A := 1px;\nB := 2px;\np { B := 3px; width: B; height: A; }\na { width: B; }");
+        assertTrue(pipeline.check());
+
+        //Only the stylesheet and p assign variables, so only they have a frame
+        Stylesheet stylesheet = pipeline.getAST().root;
+        Stylerule p = (Stylerule) stylesheet.body.get(2);
+        Stylerule a = (Stylerule) stylesheet.body.get(3);
+        VariableReference pWidth = (VariableReference) ((Declaration) p.body.get(1)).expression;
+        VariableReference pHeight = (VariableReference) ((Declaration) p.body.get(2)).expression;
+        VariableReference aWidth = (VariableReference) ((Declaration) a.body.get(0)).expression;
+        assertEquals(0, pWidth.bindingDepth);
+        assertEquals(0, pWidth.bindingSlot);
+        assertEquals(1, pHeight.bindingDepth);
+        assertEquals(0, pHeight.bindingSlot);
+        assertEquals(0, aWidth.bindingDepth);
+        assertEquals(1, aWidth.bindingSlot);
+
+        pipeline.transform();
+        assertEquals("p {\n  width: 3px;\n  height: 1px;\n}\n\na {\n  width: 2px;\n}\n\n", pipeline.generate());
+    }
+}
@@ -0,0 +1,75 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ArithmeticOperator;
+import nl.han.ica.icss.ast.ComparisonOperator;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperatorTypesTest {
+
+    //The rules of the checker before the tables, every table entry must give the same result
+    ExpressionType expectedResultOf(ArithmeticOperator operator, ExpressionType left, ExpressionType right) {
+        final boolean hasIllegalExpressionTypes = left == ExpressionType.COLOR || right == ExpressionType.COLOR
+                || left == ExpressionType.BOOL || right == ExpressionType.BOOL;
+
+        if (left == ExpressionType.UNDEFINED || right == ExpressionType.UNDEFINED || hasIllegalExpressionTypes) {
+            return ExpressionType.UNDEFINED;
+        }
+        if (operator == ArithmeticOperator.MULTIPLY) {
+            final boolean hasAtLeastOneScalar = left == ExpressionType.SCALAR || right == ExpressionType.SCALAR;
+
+            if (!hasAtLeastOneScalar) {
+                return ExpressionType.UNDEFINED;
+            }
+            return left == ExpressionType.SCALAR ? right : left;
+        }
+        return left == right ? left : ExpressionType.UNDEFINED;
+    }
+
+    boolean expectedComparable(ComparisonOperator operator, ExpressionType left, ExpressionType right) {
+        final boolean isNotEqualityOperator = operator != ComparisonOperator.EQ && operator != ComparisonOperator.NQ;
+        final boolean isNotLogicOperator = operator != ComparisonOperator.AND && operator != ComparisonOperator.OR;
+        final boolean isNonNumericExpressionType = left == ExpressionType.COLOR || right == ExpressionType.BOOL;
+
+        return !(isNotEqualityOperator && isNotLogicOperator && isNonNumericExpressionType);
+    }
+
+    @Test
+    void testOperationResultsMatchCheckerRules() {
+
+        int legalOperations = 0;
+        for (ArithmeticOperator operator : ArithmeticOperator.values()) {
+            for (ExpressionType left : ExpressionType.values()) {
+                for (ExpressionType right : ExpressionType.values()) {
+                    ExpressionType result = OperatorTypes.resultOf(operator, left, right);
+
+                    assertEquals(expectedResultOf(operator, left, right), result, String.format("%s %s %s", left, operator, right));
+                    if (result != ExpressionType.UNDEFINED) {
+                        legalOperations++;
+                    }
+                }
+            }
+        }
+        //Adding and subtracting three units, multiplying a scalar with itself and with two units on either side
+        assertEquals(11, legalOperations);
+        assertEquals(ExpressionType.PERCENTAGE, OperatorTypes.resultOf(ArithmeticOperator.MULTIPLY, ExpressionType.SCALAR, ExpressionType.PERCENTAGE));
+        assertEquals(ExpressionType.UNDEFINED, OperatorTypes.resultOf(ArithmeticOperator.ADD, ExpressionType.PIXEL, ExpressionType.PERCENTAGE));
+    }
+
+    @Test
+    void testComparableMatchesCheckerRules() {
+
+        //The checker only asks when both sides have the same type
+        for (ComparisonOperator operator : ComparisonOperator.values()) {
+            for (ExpressionType type : ExpressionType.values()) {
+                assertEquals(expectedComparable(operator, type, type), OperatorTypes.isComparable(operator, type), String.format("%s %s %s", type, operator, type));
+            }
+        }
+        assertFalse(OperatorTypes.isComparable(ComparisonOperator.LT, ExpressionType.COLOR));
+        assertFalse(OperatorTypes.isComparable(ComparisonOperator.GET, ExpressionType.BOOL));
+        assertTrue(OperatorTypes.isComparable(ComparisonOperator.NQ, ExpressionType.COLOR));
+        assertTrue(OperatorTypes.isComparable(ComparisonOperator.AND, ExpressionType.BOOL));
+    }
+}
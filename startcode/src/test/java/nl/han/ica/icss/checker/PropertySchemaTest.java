@@ -0,0 +1,55 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertySchemaTest {
+
+    @Test
+    void testPropertySchemaDecidesLegalProperties() throws IOException {
+
+        StringBuilder schema = new StringBuilder("# Sizes and colors\nborder-color: COLOR\n*: PIXEL\n");
+        for (int i = 0; i < 500; i++) {
+            schema.append("margin-").append(i).append(": PIXEL PERCENTAGE\n");
+        }
+        PropertySchema propertySchema = PropertySchema.read(new ByteArrayInputStream(schema.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(501, propertySchema.size());
+        for (int i = 0; i < 500; i++) {
+            assertTrue(propertySchema.isAllowed("margin-" + i, ExpressionType.PERCENTAGE));
+        }
+        assertFalse(propertySchema.contains("width"));
+        assertEquals(PropertySchema.maskOf(ExpressionType.PIXEL), propertySchema.getAllowedTypes("width"));
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setPropertySchema(propertySchema);
+        pipeline.parseString("p { margin-7: 10%; border-color: #ffffff; width: 2px; }\na { margin-499: #ffffff; }");
+        assertFalse(pipeline.check());
+        assertEquals(List.of("width is not a legal property name!", "margin-499 has an illegal value type or expression!"),
+                pipeline.getSemanticErrors().stream().map(error -> error.description).collect(Collectors.toList()));
+
+        assertThrows(IllegalArgumentException.class, () -> PropertySchema.read(
+                new ByteArrayInputStream("width: PIXEL\nwidth: COLOR\n".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testPropertySchemaSeparatesPropertiesWithSameStringHash() throws IOException {
+
+        //"cn" and "e0", and "width" and "wif6h", have the same String hash
+        PropertySchema propertySchema = PropertySchema.read(new ByteArrayInputStream(
+                "cn: PIXEL\ne0: COLOR\nwidth: PERCENTAGE\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, propertySchema.size());
+        assertEquals(PropertySchema.maskOf(ExpressionType.PIXEL), propertySchema.getAllowedTypes("cn"));
+        assertEquals(PropertySchema.maskOf(ExpressionType.COLOR), propertySchema.getAllowedTypes("e0"));
+        assertTrue(propertySchema.contains("width"));
+        assertFalse(propertySchema.contains("wif6h"));
+    }
+}
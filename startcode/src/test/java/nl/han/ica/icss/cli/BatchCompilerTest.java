@@ -0,0 +1,79 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCompilerTest {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    int run(String... args) throws IOException {
+        return BatchCompiler.run(args, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testOutputDirectoryMirrorsInputDirectories(@TempDir Path directory) throws IOException {
+
+        Path styles = directory.resolve("styles");
+        Files.createDirectories(styles.resolve("a"));
+        Files.createDirectories(styles.resolve("b"));
+        Files.writeString(styles.resolve("a/main.icss"), "p { width: 10px; }");
+        Files.writeString(styles.resolve("b/main.icss"), "p { width: 20px; }");
+        Path output = directory.resolve("out");
+
+        assertEquals(0, run("-o", output.toString(), "-j", "2", styles.toString()));
+        assertEquals("p {\n  width: 10px;\n}\n\n", Files.readString(output.resolve("a/main.css")));
+        assertEquals("p {\n  width: 20px;\n}\n\n", Files.readString(output.resolve("b/main.css")));
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("Compiled 2 of 2 files"));
+
+        //Two files of the same name given by themselves would overwrite each other
+        assertEquals(2, run("-o", output.toString(), styles.resolve("a/main.icss").toString(), styles.resolve("b/main.icss").toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("would both be written to main.css"));
+    }
+
+    @Test
+    void testInvalidOptionsAreUsageErrors(@TempDir Path directory) throws IOException {
+
+        Path file = directory.resolve("main.icss");
+        Files.writeString(file, "p { width: 10px; }");
+
+        assertEquals(2, run("-j", "0", file.toString()));
+        assertEquals(2, run("-j", "many", file.toString()));
+        assertEquals(2, run("-m", "-1", file.toString()));
+        assertEquals(2, run("-m", "1"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("-j expects a number from 1 to 32767, found: 0"));
+        assertFalse(Files.exists(directory.resolve("main.css")));
+
+        assertEquals(0, run("-m", "1", "-j", "1", file.toString()));
+        assertTrue(Files.exists(directory.resolve("main.css")));
+    }
+
+    @Test
+    void testExceptionOnlyFailsItsFile(@TempDir Path directory) throws IOException {
+
+        //A file of more than 2 GB cannot be mapped, the mapping throws an IllegalArgumentException
+        Path file = directory.resolve("main.icss");
+        Path tooLarge = directory.resolve("large.icss");
+        Files.writeString(file, "p { width: 10px; }");
+        try (RandomAccessFile sparse = new RandomAccessFile(tooLarge.toFile(), "rw")) {
+            sparse.setLength(3L << 30);
+        }
+
+        assertEquals(1, run("-j", "1", tooLarge.toString(), file.toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).startsWith(tooLarge + ": java.lang.IllegalArgumentException"));
+        assertFalse(err.toString(StandardCharsets.UTF_8).contains("Usage"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("Compiled 1 of 2 files"));
+        assertTrue(Files.exists(directory.resolve("main.css")));
+    }
+}
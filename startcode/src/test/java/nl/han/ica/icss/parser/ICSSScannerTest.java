@@ -0,0 +1,98 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ICSSScannerTest {
+
+    byte[] readTestFile(String resource) throws IOException {
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    //Every token and error as one line, so a difference shows up in the assertion message
+    List<String> lexWithICSSLexer(byte[] input) {
+        List<String> result = new ArrayList<>();
+        ICSSLexer lexer = new ICSSLexer(new ByteBufferCharStream(ByteBuffer.wrap(input), "test"));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(collectErrors(result));
+
+        Token token;
+        do {
+            token = lexer.nextToken();
+            result.add(describe(token));
+        } while (token.getType() != Token.EOF);
+
+        return result;
+    }
+
+    List<String> lexWithICSSScanner(byte[] input) {
+        List<String> result = new ArrayList<>();
+        ICSSScanner scanner = new ICSSScanner(new ByteBufferCharStream(ByteBuffer.wrap(input), "test"));
+        scanner.setErrorListener(collectErrors(result));
+
+        Token token;
+        do {
+            token = scanner.nextToken();
+            result.add(describe(token));
+        } while (token.getType() != Token.EOF);
+
+        return result;
+    }
+
+    ANTLRErrorListener collectErrors(List<String> result) {
+        return new BaseErrorListener() {
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                result.add(String.format("error %d:%d %s", line, charPositionInLine, msg));
+            }
+        };
+    }
+
+    String describe(Token token) {
+        return String.format("%s '%s' %d:%d [%d..%d] channel %d",
+                ICSSLexer.VOCABULARY.getSymbolicName(token.getType()), token.getText(),
+                token.getLine(), token.getCharPositionInLine(), token.getStartIndex(), token.getStopIndex(), token.getChannel());
+    }
+
+    void assertSameTokens(byte[] input) {
+        assertEquals(lexWithICSSLexer(input), lexWithICSSScanner(input));
+    }
+
+    @Test
+    void testSameTokensAsLexerOnFixtures() throws IOException {
+        for (String resource : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+            assertSameTokens(readTestFile(resource));
+        }
+    }
+
+    @Test
+    void testSameTokensAsLexerOnEdgeCases() {
+        String[] inputs = {
+                "",
+                " \n\t\r\n ",
+                "if iff else elses TRUE TRUEX FALSE False",
+                "12 12px 12p 12pxa 12% 12%% -12",
+                "#ffffff #ffffffa #fff #abcdeg #FFFFFF #",
+                ".class .Class . a-b-c A_b9 a_b",
+                ": := :== < <= <<= > >= ! != !! = == & && | || &",
+                "p {\n  width: 10px;\n}\n\n@ é ~ #\n.",
+                "a\r\nb\n\n  c #\n d"
+        };
+
+        for (String input : inputs) {
+            assertSameTokens(input.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package nl.han.ica.icss.parser;
 
+import nl.han.ica.icss.Pipeline;
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.ast.SymbolTable;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.VariableReference;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
@@ -9,9 +18,11 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.*;
 
 class ParserTest {
 
@@ -57,6 +68,14 @@ class ParserTest {
         return listener.getAST();
     }
 
+    String readTestFile(String resource) throws IOException {
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
     @Test
     void testParseLevel0() throws IOException {
 
@@ -88,4 +107,336 @@ class ParserTest {
         AST exp = Fixtures.uncheckedLevel3();
         assertEquals(exp, sut);
     }
+
+    @Test
+    void testTwoStagePredictionLevel3() throws IOException {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setTwoStagePrediction(true);
+        pipeline.parseString(readTestFile("level3.icss"));
+
+        assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+        assertFalse(pipeline.isFullContextFallbackUsed());
+    }
+
+    @Test
+    void testTwoStagePredictionFallsBackOnSyntaxError() {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("p { width: 10px }");
+        String expectedErrors = pipeline.getErrors().toString();
+
+        pipeline.setTwoStagePrediction(true);
+        pipeline.parseString("p { width: 10px }");
+
+        assertTrue(pipeline.isFullContextFallbackUsed());
+        assertEquals(expectedErrors, pipeline.getErrors().toString());
+    }
+
+    @Test
+    void testTwoStagePredictionReportsNoViableAlternativeOnce() {
+
+        //The SLL pass finds the same error as the LL pass, only the LL pass may report it
+        String input = "p { color: red; }";
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            for (boolean errorRecovery : new boolean[]{false, true}) {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+                pipeline.setErrorRecovery(errorRecovery);
+                pipeline.parseString(input);
+                String expectedErrors = pipeline.getErrors().toString();
+
+                pipeline.setTwoStagePrediction(true);
+                pipeline.parseString(input);
+
+                assertTrue(pipeline.isFullContextFallbackUsed());
+                assertEquals(expectedErrors, pipeline.getErrors().toString());
+            }
+        }
+    }
+
+    @Test
+    void testParseFileLevel3() throws IOException, URISyntaxException {
+
+        Path file = Path.of(this.getClass().getClassLoader().getResource("level3.icss").toURI());
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseFile(file);
+
+        assertTrue(pipeline.isParsed());
+        assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+    }
+
+    @Test
+    void testBuildASTWhileParsingLevel3() throws IOException {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setBuildASTWhileParsing(true);
+        pipeline.parseString(readTestFile("level3.icss"));
+
+        assertTrue(pipeline.isParsed());
+        assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+        assertEquals(parseTestFile("level3.icss").toString(), pipeline.getAST().toString());
+    }
+
+    @Test
+    void testBuildASTWhileParsingReportsSameErrors() {
+
+        String input = "p { if[!5px] { width: 10px; } }";
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        String expectedErrors = pipeline.getErrors().toString();
+
+        pipeline.setBuildASTWhileParsing(true);
+        pipeline.parseString(input);
+
+        assertFalse(pipeline.isParsed());
+        assertEquals(expectedErrors, pipeline.getErrors().toString());
+    }
+
+    @Test
+    void testBuildASTWhileParsingReportsSameErrorsOnBrokenInput() {
+
+        //Operands that went missing in a syntax error, the builder has no parse tree to find them in
+        String[] inputs = {"p { if[A <] { width: 1px; } }", "p { if[] { width: 1px; } }", "p { if[ && ] { width: 1px; } }",
+                "A := ! ; : ;", "A := 7 + p20px * 3;", "Wd := ! == 1px;", "p { if[TRUE <= 7 *] { width: 1px; } }",
+                "p { if[>= FALSE - 7 Bb] { width: 1px; } }"};
+
+        for (String input : inputs) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.parseString(input);
+            String expectedErrors = pipeline.getErrors().toString();
+
+            pipeline.setBuildASTWhileParsing(true);
+            pipeline.parseString(input);
+
+            assertFalse(pipeline.isParsed());
+            assertEquals(expectedErrors, pipeline.getErrors().toString(), input);
+        }
+    }
+
+    @Test
+    void testBooleanValuesAreRejectedAlike() {
+
+        //A variable name with other characters than letters is only unrecognized where a value is read on its own
+        String input = "A := !A1;\nB := A1 && TRUE;\nC := A1 < 2;\nD := TRUE && 2 + Apx;\nE := FALSE || 2 * 10%;\np { if[A1] { width: 1px; } }";
+        String expectedErrors = "[Syntax error: Unrecognizable value: A1, Syntax error: Unrecognizable value: A1, "
+                + "Syntax error: Unrecognizable value: 2+Apx, Syntax error: Unexpected value: 2*10% ]";
+        String expected = "[Stylesheet|[VariableAssignment (C)|[VariableReference (C)|][BooleanComparison (<)|[VariableReference (A1)|][Scalar literal (2)|]]]"
+                + "[Stylerule|[TagSelector p|][If_Clause|[VariableReference (A1)|][Declaration|[Property: (width)|][Pixel literal (1)|]]]]]";
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setErrorRecovery(true);
+            pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+            pipeline.parseString(input);
+
+            assertEquals(expectedErrors, pipeline.getErrors().toString());
+            assertEquals(expected, pipeline.getAST().toString());
+        }
+    }
+
+    @Test
+    void testOperatorPrecedence() {
+
+        String input = "p { width: 1px + 2px * 3 - 4px; if[A || !B && C < !D] { height: 1px; } }";
+        String expected = "[Stylesheet|[Stylerule|[TagSelector p|][Declaration|[Property: (width)|]"
+                + "[Subtract|[Add|[Pixel literal (1)|][Multiply|[Pixel literal (2)|][Scalar literal (3)|]]][Pixel literal (4)|]]]"
+                + "[If_Clause|[BooleanComparison (||)|[VariableReference (A)|][BooleanComparison (&&)|[NegatedBooleanExpression|[VariableReference (B)|]]"
+                + "[BooleanComparison (<)|[VariableReference (C)|][NegatedBooleanExpression|[VariableReference (D)|]]]]]"
+                + "[Declaration|[Property: (height)|][Pixel literal (1)|]]]]]";
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+            pipeline.parseString(input);
+
+            assertTrue(pipeline.isParsed());
+            assertEquals(expected, pipeline.getAST().toString());
+        }
+    }
+
+    @Test
+    void testComparisonsGroupLikeTheOriginalGrammar() {
+
+        //A comparison after a boolean literal compares the whole conditions around it, other comparisons take one operand on each side
+        String input = "p { if[TRUE == A && B] { width: 1px; } if[A < B < C < D] { width: 2px; } if[!TRUE < A || B] { width: 3px; } "
+                + "if[A == B && C] { width: 4px; } if[A < !!B != TRUE] { width: 5px; } }";
+        String expected = "[Stylesheet|[Stylerule|[TagSelector p|]"
+                + "[If_Clause|[BooleanComparison (==)|[Bool Literal (TRUE)|][BooleanComparison (&&)|[VariableReference (A)|][VariableReference (B)|]]]"
+                + "[Declaration|[Property: (width)|][Pixel literal (1)|]]]"
+                + "[If_Clause|[BooleanComparison (<)|[BooleanComparison (<)|[VariableReference (A)|][VariableReference (B)|]]"
+                + "[BooleanComparison (<)|[VariableReference (C)|][VariableReference (D)|]]][Declaration|[Property: (width)|][Pixel literal (2)|]]]"
+                + "[If_Clause|[BooleanComparison (<)|[NegatedBooleanExpression|[Bool Literal (TRUE)|]][BooleanComparison (||)|[VariableReference (A)|][VariableReference (B)|]]]"
+                + "[Declaration|[Property: (width)|][Pixel literal (3)|]]]"
+                + "[If_Clause|[BooleanComparison (&&)|[BooleanComparison (==)|[VariableReference (A)|][VariableReference (B)|]][VariableReference (C)|]]"
+                + "[Declaration|[Property: (width)|][Pixel literal (4)|]]]"
+                + "[If_Clause|[BooleanComparison (<)|[VariableReference (A)|][NegatedBooleanComparison (!=)|[NegatedBooleanExpression|[VariableReference (B)|]][Bool Literal (TRUE)|]]]"
+                + "[Declaration|[Property: (width)|][Pixel literal (5)|]]]]]";
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+            pipeline.parseString(input);
+
+            assertTrue(pipeline.isParsed());
+            assertEquals(expected, pipeline.getAST().toString());
+        }
+    }
+
+    @Test
+    void testOperandLostInSyntaxErrorIsNoCrash() {
+
+        //The parser drops the broken operand, the listener must not take the variable assignment for it
+        String[] inputs = {"A := 7 + p20px * 3;", "Wd := ! == 1px;"};
+        String[] expectedErrors = {"Syntax error: mismatched input 'p20px'", "Syntax error: extraneous input '=='"};
+
+        for (int i = 0; i < inputs.length; i++) {
+            for (boolean errorRecovery : new boolean[]{false, true}) {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setErrorRecovery(errorRecovery);
+                pipeline.parseString(inputs[i]);
+
+                assertFalse(pipeline.isParsed());
+                assertTrue(pipeline.getErrors().get(0).startsWith(expectedErrors[i]), pipeline.getErrors().toString());
+            }
+        }
+    }
+
+    @Test
+    void testIncrementalEdit() throws IOException {
+
+        String text = readTestFile("level3.icss");
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(text);
+
+        //Change the height in the first stylerule and add a new stylerule after it
+        int offset = text.indexOf("20px;");
+        pipeline.applyEdit(offset, 2, "30");
+        text = text.substring(0, offset) + "30" + text.substring(offset + 2);
+        pipeline.applyEdit(text.indexOf("a {"), 0, "b { width: 1px; }\n");
+        text = text.replace("a {", "b { width: 1px; }\na {");
+
+        Pipeline expected = new Pipeline();
+        expected.parseString(text);
+
+        assertTrue(pipeline.isLastParseIncremental());
+        assertTrue(pipeline.isParsed());
+        assertEquals(expected.getAST(), pipeline.getAST());
+        assertEquals(expected.getAST().toString(), pipeline.getAST().toString());
+    }
+
+    @Test
+    void testIncrementalEditFallsBackOnSyntaxError() throws IOException {
+
+        String text = readTestFile("level3.icss");
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(text);
+
+        //Removing the closing brace of the first stylerule makes it swallow the next one
+        int offset = text.indexOf("}\na {");
+        pipeline.applyEdit(offset, 1, "");
+
+        Pipeline expected = new Pipeline();
+        expected.parseString(text.substring(0, offset) + text.substring(offset + 1));
+
+        assertFalse(pipeline.isLastParseIncremental());
+        assertFalse(pipeline.isParsed());
+        assertEquals(expected.getErrors(), pipeline.getErrors());
+    }
+
+    @Test
+    void testErrorRecoveryReportsAllErrors() {
+
+        String input = "A := !5px;\nB := !!!TRUE;\np { width: 10px; }\nq { if[!5px] { width: 1px; } height: 2px }\nr { top: 1px; }";
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        assertEquals(2, pipeline.getErrors().size());
+
+        pipeline.setErrorRecovery(true);
+        pipeline.parseString(input);
+
+        assertFalse(pipeline.isParsed());
+        //The errors of the parser and those of the walk after it in the order of the input
+        assertEquals("[Syntax error: Not a valid boolean expression!, Syntax error: Not a valid boolean expression!, "
+                + "Syntax error: Not a valid boolean expression!, Syntax error: missing ';' at '}']", pipeline.getErrors().toString());
+        assertEquals(1, pipeline.getSyntaxErrors().get(0).line);
+        assertEquals(2, pipeline.getSyntaxErrors().get(1).line);
+        assertEquals(4, pipeline.getSyntaxErrors().get(2).line);
+        assertEquals(4, pipeline.getSyntaxErrors().get(3).line);
+        assertTrue(pipeline.getSyntaxErrors().get(2).charPositionInLine < pipeline.getSyntaxErrors().get(3).charPositionInLine);
+        assertEquals("[Stylesheet|[Stylerule|[TagSelector p|][Declaration|[Property: (width)|][Pixel literal (10)|]]]"
+                + "[Stylerule|[TagSelector q|]][Stylerule|[TagSelector r|][Declaration|[Property: (top)|][Pixel literal (1)|]]]]", pipeline.getAST().toString());
+    }
+
+    @Test
+    void testNamesAreInternedInSymbolTable() {
+
+        String input = "Width := 10px;\np { width: Width; }\nq { width: Width; }";
+        SymbolTable symbols = new SymbolTable();
+
+        for (boolean buildASTWhileParsing : new boolean[]{false, true}) {
+            Pipeline pipeline = new Pipeline();
+            pipeline.setSymbolTable(symbols);
+            pipeline.setBuildASTWhileParsing(buildASTWhileParsing);
+            pipeline.parseString(input);
+
+            AST ast = pipeline.getAST();
+            VariableReference assigned = ((VariableAssignment) ast.root.body.get(0)).name;
+            Declaration first = (Declaration) ((Stylerule) ast.root.body.get(1)).body.get(0);
+            Declaration second = (Declaration) ((Stylerule) ast.root.body.get(2)).body.get(0);
+            VariableReference referenced = (VariableReference) second.expression;
+
+            assertSame(symbols, ast.symbols);
+            assertSame(assigned.name, referenced.name);
+            assertEquals(symbols.intern("Width"), referenced.symbolId);
+            assertSame(first.property.name, second.property.name);
+            assertEquals(symbols.intern("width"), second.property.symbolId);
+            assertTrue(pipeline.check());
+        }
+    }
+
+    void assertSameChildAccess(ASTNode node) {
+        assertEquals(node.getChildren().size(), node.getChildCount());
+        for (int i = 0; i < node.getChildCount(); i++) {
+            assertSame(node.getChildren().get(i), node.getChild(i));
+            assertSameChildAccess(node.getChild(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> node.getChild(node.getChildCount()));
+    }
+
+    @Test
+    void testChildIndexAccessMatchesGetChildren() {
+
+        assertSameChildAccess(Fixtures.uncheckedLevel3().root);
+    }
+
+    @Test
+    void testCompactASTRoundTrip() throws IOException {
+
+        AST level3 = Fixtures.uncheckedLevel3();
+        assertEquals(level3, CompactAST.of(level3).toAST());
+        assertEquals(level3.toString(), CompactAST.of(level3, true).toAST().toString());
+
+        Pipeline expected = new Pipeline();
+        expected.parseString(readTestFile("level3.icss"));
+        expected.check();
+        expected.transform();
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setUseCompactAST(true);
+        pipeline.parseString(readTestFile("level3.icss"));
+        assertNotNull(pipeline.getCompactAST());
+        //The stages share one expansion of the compact form
+        AST expansion = pipeline.getAST();
+        assertSame(expansion, pipeline.getAST());
+        assertTrue(pipeline.check());
+        pipeline.transform();
+
+        assertSame(expansion, pipeline.getAST());
+        assertEquals(expected.getAST(), pipeline.getAST());
+        assertEquals(expected.generate(), pipeline.generate());
+        assertEquals(expected.getAST(), pipeline.getCompactAST().toAST());
+    }
 }
@@ -0,0 +1,88 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformTest {
+
+    String readTestFile(String resource) throws IOException {
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testTransformEvaluatesEveryKindOfExpression() {
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("B := TRUE;\nN := !B;\np { S := 2 * 3 + 1; width: S * 10px + 5px; height: 3 * 10%; "
+                + "if[!B] { width: 1px; } else { height: 2 * 3px; } if[N] { color: #000000; } if[!FALSE] { color: #ffffff; } }");
+        assertTrue(pipeline.check());
+        pipeline.transform();
+
+        assertEquals("p {\n  width: 75px;\n  height: 30%;\n  height: 6px;\n  color: #ffffff;\n}\n\n", pipeline.generate());
+    }
+
+    @Test
+    void testParallelTransformGeneratesSameCss() {
+
+        StringBuilder input = new StringBuilder("A := 1px;\nB := TRUE;\n");
+        for (int i = 0; i < 200; i++) {
+            input.append(".c").append(i).append(" { C := A + ").append(i).append("px; width: C * 2; ")
+                    .append("if[B] { height: 10%; } else { height: A; } }\n");
+            input.append(i % 50 == 0 ? "A := A + 1px;\nB := FALSE;\n" : "");
+        }
+
+        Pipeline sequential = new Pipeline();
+        sequential.parseString(input.toString());
+        assertTrue(sequential.check());
+        sequential.transform();
+
+        Pipeline parallel = new Pipeline();
+        parallel.setParallelTransform(true);
+        parallel.parseString(input.toString());
+        assertTrue(parallel.check());
+        parallel.transform();
+        assertEquals(sequential.generate(), parallel.generate());
+    }
+
+    @Test
+    void testPersistentTransformsShareUnchangedNodes() throws IOException {
+
+        String text = readTestFile("level3.icss");
+        Pipeline expected = new Pipeline();
+        expected.parseString(text);
+        expected.check();
+        expected.transform();
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setPersistentTransforms(true);
+        pipeline.parseString(text);
+        AST checked = pipeline.getAST();
+        String checkedText = checked.toString();
+        assertTrue(pipeline.check());
+        pipeline.transform();
+
+        assertSame(checked, pipeline.getCheckedAST());
+        assertEquals(checkedText, checked.toString());
+        assertEquals(expected.getAST(), pipeline.getAST());
+        assertEquals(expected.generate(), pipeline.generate());
+
+        //The variable assignment of a literal is not changed by the transforms and stays shared
+        assertSame(checked.root.body.get(0), pipeline.getAST().root.body.get(0));
+
+        //An edit after the transform still only parses the touched lines
+        int offset = text.indexOf("20px;");
+        pipeline.applyEdit(offset, 2, "30");
+        assertTrue(pipeline.isLastParseIncremental());
+    }
+}